@@ -0,0 +1,140 @@
+package org.example.benchmarks;
+
+import org.example.services.DomainIpService;
+import org.example.services.GzipCodec;
+import org.example.services.SftpService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// Выбор уровня сжатия для канала: для каждого уровня gzip замеряет размер
+// файла, время сериализации со сжатием и время распаковки с разбором,
+// и оценивает полное время (запись + передача + чтение) для каналов
+// разной скорости. Если указан SFTP-сервер, дополнительно замеряет реальную
+// выгрузку и загрузку через него (шифрование SSH тоже зависит от объема).
+//   java -cp benchmarks.jar org.example.benchmarks.CompressionLevelReport [записей|файл JSON] [хост порт пользователь пароль]
+// Без файла используются синтетические данные с зонами (SyntheticData.zonedDomain);
+// реальные данные сжимаются хуже, поэтому лучше указать свой файл.
+public class CompressionLevelReport {
+    private static final int[] LEVELS = {0, 1, 3, 6, 9};
+    private static final int[] LINKS_MBIT = {10, 100, 1000};
+    private static final int WARMUP = 2;
+    private static final int RUNS = 3;
+    private static final String REMOTE_DIRECTORY = "/upload/";
+
+    public static void main(String[] args) throws Exception {
+        String source = args.length > 0 ? args[0] : "1000000";
+        DomainIpService domainIpService;
+        if (Files.isRegularFile(Paths.get(source))) {
+            domainIpService = new DomainIpService();
+            domainIpService.loadDataFromFile(source);
+        } else {
+            domainIpService = SyntheticData.zonedService(Integer.parseInt(source));
+        }
+
+        SftpService sftpService = null;
+        if (args.length >= 5) {
+            sftpService = new SftpService(args[1], Integer.parseInt(args[2]), args[3], args[4]);
+            sftpService.connect();
+        }
+
+        System.out.println("Записей: " + domainIpService.getRecordCount() +
+                ". Время в мс, лучшее из " + RUNS + "; оценка для канала = запись + передача + чтение.");
+        StringBuilder header = new StringBuilder(String.format("%-8s %10s %7s %8s %8s",
+                "уровень", "размер, КБ", "доля", "запись", "чтение"));
+        for (int link : LINKS_MBIT) {
+            header.append(String.format(" %10s", link + " Мбит/с"));
+        }
+        if (sftpService != null) {
+            header.append(String.format(" %10s %10s", "SFTP put", "SFTP get"));
+        }
+        System.out.println(header);
+
+        long plainSize = 0;
+        try {
+            for (int level : LEVELS) {
+                // Уровень 0 - файл без сжатия
+                String fileName = "compression-report.json" + (level > 0 ? ".gz" : "");
+                byte[] encoded = encode(domainIpService, fileName, level);
+                if (level == 0) {
+                    plainSize = encoded.length;
+                }
+
+                long writeMillis = best(() -> encode(domainIpService, fileName, level));
+                long readMillis = best(() -> {
+                    new DomainIpService().loadData(new ByteArrayInputStream(encoded));
+                    return null;
+                });
+
+                StringBuilder row = new StringBuilder(String.format("%-8s %10d %6.1f%% %8d %8d",
+                        level > 0 ? "gzip " + level : "нет", encoded.length / 1024,
+                        100.0 * encoded.length / plainSize, writeMillis, readMillis));
+                for (int link : LINKS_MBIT) {
+                    long transferMillis = encoded.length * 8L * 1000 / (link * 1_000_000L);
+                    row.append(String.format(" %10d", writeMillis + transferMillis + readMillis));
+                }
+                if (sftpService != null) {
+                    row.append(sftpColumns(sftpService, domainIpService, REMOTE_DIRECTORY + fileName, level));
+                }
+                System.out.println(row);
+            }
+        } finally {
+            if (sftpService != null) {
+                sftpService.disconnect();
+            }
+        }
+    }
+
+    // Выгрузка потоком со сжатием и загрузка с разбором, как в самом клиенте
+    private static String sftpColumns(SftpService sftpService, DomainIpService domainIpService,
+                                      String remotePath, int level) throws Exception {
+        try {
+            long putMillis = best(() -> {
+                try (OutputStream outputStream = GzipCodec.encode(sftpService.openUploadStream(remotePath),
+                        remotePath, level)) {
+                    domainIpService.writeData(outputStream);
+                }
+                return null;
+            });
+            long getMillis = best(() -> {
+                try (InputStream inputStream = sftpService.openDownloadStream(remotePath)) {
+                    new DomainIpService().loadData(inputStream);
+                }
+                return null;
+            });
+            return String.format(" %10d %10d", putMillis, getMillis);
+        } finally {
+            sftpService.deleteFile(remotePath);
+        }
+    }
+
+    private static byte[] encode(DomainIpService domainIpService, String fileName, int level) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream outputStream = GzipCodec.encode(bytes, fileName, level)) {
+            domainIpService.writeData(outputStream);
+        }
+        return bytes.toByteArray();
+    }
+
+    private interface Measured {
+        Object run() throws Exception;
+    }
+
+    private static long best(Measured measured) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            measured.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long startTime = System.nanoTime();
+            measured.run();
+            best = Math.min(best, System.nanoTime() - startTime);
+        }
+        return best / 1_000_000;
+    }
+}
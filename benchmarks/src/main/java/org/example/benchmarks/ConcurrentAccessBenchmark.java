@@ -0,0 +1,71 @@
+package org.example.benchmarks;
+
+import org.example.services.DomainIpService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Чтение из нескольких потоков в потокобезопасном режиме DomainIpService.
+// Зависимость пропускной способности от числа ядер: запускать с -t 1,2,4,...
+//   java -jar benchmarks.jar ConcurrentAccessBenchmark.read -t 4
+// Группа readWhileWriting: три читателя и один писатель, который
+// непрерывно добавляет и удаляет запись (каждая запись копирует данные)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ConcurrentAccessBenchmark {
+    private static final int KEYS = 4096;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private DomainIpService domainIpService;
+    private String[] domains;
+    private String[] ips;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = ThreadLocalRandom.current().nextInt(KEYS);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        domainIpService = SyntheticData.service(size, true);
+
+        domains = new String[KEYS];
+        ips = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            int index = ThreadLocalRandom.current().nextInt(size);
+            domains[i] = SyntheticData.domain(index);
+            ips[i] = SyntheticData.ip(index);
+        }
+    }
+
+    @Benchmark
+    public String read(Cursor cursor) {
+        int key = cursor.next++ & (KEYS - 1);
+        return (key & 1) == 0
+                ? domainIpService.findIpByDomain(domains[key])
+                : domainIpService.findDomainByIp(ips[key]);
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(3)
+    public String reader(Cursor cursor) {
+        return read(cursor);
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(1)
+    public void writer() throws Exception {
+        domainIpService.addRecord("new.example.org", "192.168.0.1");
+        domainIpService.removeRecordByDomain("new.example.org");
+    }
+}
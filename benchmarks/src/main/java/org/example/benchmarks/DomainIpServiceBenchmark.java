@@ -0,0 +1,92 @@
+package org.example.benchmarks;
+
+import org.example.dto.DomainIpRecord;
+import org.example.services.DomainIpService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Поиск, изменение и сериализация на наборах от 1K до 10M записей
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class DomainIpServiceBenchmark {
+    private static final int KEYS = 4096;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private DomainIpService domainIpService;
+    private String[] domains;
+    private String[] ips;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        domainIpService = SyntheticData.service(size);
+
+        // Ключи заранее, чтобы не измерять построение строк
+        domains = new String[KEYS];
+        ips = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            int index = ThreadLocalRandom.current().nextInt(size);
+            domains[i] = SyntheticData.domain(index);
+            ips[i] = SyntheticData.ip(index);
+        }
+    }
+
+    @Benchmark
+    public String findIpByDomain() {
+        return domainIpService.findIpByDomain(domains[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public String findDomainByIp() {
+        return domainIpService.findDomainByIp(ips[next++ & (KEYS - 1)]);
+    }
+
+    // Добавление и удаление парой, чтобы размер набора не менялся между вызовами
+    @Benchmark
+    public void addRecord() throws Exception {
+        domainIpService.addRecord("new.example.org", "192.168.0.1");
+        domainIpService.removeRecordByDomain("new.example.org");
+    }
+
+    // Удаление и возврат существующей записи: адрес в середине индекса, а не в конце
+    @Benchmark
+    public void removeAndAddRecord() throws Exception {
+        int i = next++ & (KEYS - 1);
+        domainIpService.removeRecordByDomain(domains[i]);
+        domainIpService.addRecord(domains[i], ips[i]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<DomainIpRecord> getAllRecords() {
+        return domainIpService.getAllRecords();
+    }
+
+    @Benchmark
+    public List<DomainIpRecord> getRecordsPage() {
+        return domainIpService.getRecords(next++ & (KEYS - 1), 50);
+    }
+
+    @Benchmark
+    public List<DomainIpRecord> getRecordsByPrefix() {
+        return domainIpService.getRecordsByPrefix("host1", 0, 50);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String convertDataToJson() {
+        return domainIpService.convertDataToJson();
+    }
+}
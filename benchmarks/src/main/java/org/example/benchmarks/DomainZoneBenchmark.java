@@ -0,0 +1,69 @@
+package org.example.benchmarks;
+
+import org.example.dto.DomainIpRecord;
+import org.example.services.DomainIpService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Поиск по зоне: дерево меток против линейного прохода с endsWith.
+// Данные с зонами (см. SyntheticData.zonedDomain): в стойке size / 1000
+// записей, в дата-центре size / 10.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class DomainZoneBenchmark {
+    @Param({"5000000"})
+    public int size;
+
+    @Param({"rack123.dc3.example.com", "dc3.example.com"})
+    public String zone;
+
+    private DomainIpService domainIpService;
+    private String suffix;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        domainIpService = SyntheticData.zonedService(size);
+        suffix = "." + zone;
+        // Дерево и отсортированный список строятся один раз, до замеров
+        domainIpService.countRecordsInZone(zone);
+        domainIpService.getAllRecords();
+    }
+
+    @Benchmark
+    public void zoneTrie(Blackhole blackhole) {
+        for (DomainIpRecord record : domainIpService.findRecordsInZone(zone)) {
+            blackhole.consume(record);
+        }
+    }
+
+    @Benchmark
+    public void zoneScan(Blackhole blackhole) {
+        for (DomainIpRecord record : domainIpService.getAllRecords()) {
+            String domain = record.getDomain().toLowerCase(Locale.ROOT);
+            if (domain.equals(zone) || domain.endsWith(suffix)) {
+                blackhole.consume(record);
+            }
+        }
+    }
+
+    @Benchmark
+    public int countTrie() {
+        return domainIpService.countRecordsInZone(zone);
+    }
+
+    // Одна метка на месте "*": стойка 123 во всех дата-центрах
+    @Benchmark
+    public void wildcardTrie(Blackhole blackhole) {
+        for (DomainIpRecord record : domainIpService.findRecordsMatching("*.rack123.*.example.com")) {
+            blackhole.consume(record);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.benchmarks;
+
+import org.example.services.DomainIpService;
+import org.example.services.LookupHttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Нагрузочный тест HTTP-поиска: поднимает LookupHttpServer на синтетических
+// данных и опрашивает его из нескольких клиентских потоков.
+// Выводит запросы в секунду и задержки p50/p99/max.
+//   java -cp benchmarks.jar org.example.benchmarks.HttpLoadTest [записей] [клиентов] [секунд] [ключей в запросе] [потоков сервера]
+// При 1 ключе в запросе используется GET /lookup, иначе POST /lookup/batch.
+public class HttpLoadTest {
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        int serverThreads = args.length > 4 ? Integer.parseInt(args[4]) : LookupHttpServer.DEFAULT_THREADS;
+
+        DomainIpService domainIpService = SyntheticData.service(size, true);
+        try (LookupHttpServer server = new LookupHttpServer(domainIpService,
+                LookupHttpServer.DEFAULT_BIND_ADDRESS, 0, serverThreads)) {
+            server.start();
+            String baseUrl = "http://" + LookupHttpServer.DEFAULT_BIND_ADDRESS + ":" + server.getPort();
+
+            // Прогрев, результаты не учитываются
+            run(baseUrl, size, clients, Math.max(1, seconds / 5), batchSize);
+            long[] latencies = run(baseUrl, size, clients, seconds, batchSize);
+
+            Arrays.sort(latencies);
+            System.out.println("Записей: " + size + ", клиентов: " + clients + ", потоков сервера: " + serverThreads +
+                    ", ключей в запросе: " + batchSize);
+            System.out.printf("Запросов: %d, запросов/с: %.0f, ключей/с: %.0f%n", latencies.length,
+                    latencies.length / (double) seconds, latencies.length * (double) batchSize / seconds);
+            System.out.printf("Задержка, мкс: p50 %d, p99 %d, max %d%n",
+                    percentile(latencies, 0.50) / 1000, percentile(latencies, 0.99) / 1000,
+                    latencies.length > 0 ? latencies[latencies.length - 1] / 1000 : 0);
+        }
+    }
+
+    private static long[] run(String baseUrl, int size, int clients, int seconds, int batchSize) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            results.add(executor.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    if (batchSize == 1) {
+                        int i = random.nextInt(size);
+                        get(baseUrl + "/lookup?" + ((i & 1) == 0
+                                ? "domain=" + SyntheticData.domain(i)
+                                : "ip=" + SyntheticData.ip(i)));
+                    } else {
+                        StringBuilder body = new StringBuilder();
+                        for (int k = 0; k < batchSize; k++) {
+                            int i = random.nextInt(size);
+                            body.append((i & 1) == 0 ? SyntheticData.domain(i) : SyntheticData.ip(i)).append('\n');
+                        }
+                        post(baseUrl + "/lookup/batch", body.toString());
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - start;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+        executor.shutdown();
+
+        long[] all = new long[0];
+        for (Future<long[]> result : results) {
+            long[] latencies = result.get();
+            int offset = all.length;
+            all = Arrays.copyOf(all, offset + latencies.length);
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+        }
+        return all;
+    }
+
+    private static void get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        readResponse(connection);
+    }
+
+    private static void post(String url, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream outputStream = connection.getOutputStream()) {
+            outputStream.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        readResponse(connection);
+    }
+
+    // Ответ дочитывается полностью, чтобы соединение вернулось в пул keep-alive
+    private static void readResponse(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        if (status != 200) {
+            throw new IOException("Неожиданный ответ сервера: " + status);
+        }
+        try (InputStream inputStream = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            while (inputStream.read(buffer) != -1) {
+                // только дочитываем
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+}
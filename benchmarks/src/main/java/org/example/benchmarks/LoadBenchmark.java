@@ -0,0 +1,40 @@
+package org.example.benchmarks;
+
+import org.example.services.DomainIpService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Разбор JSON-файла целиком: время загрузки и выделение памяти на запись
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class LoadBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = SyntheticData.writeJsonFile(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public DomainIpService loadDataFromFile() throws IOException {
+        DomainIpService domainIpService = new DomainIpService();
+        domainIpService.loadDataFromFile(file.toString());
+        return domainIpService;
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.benchmarks;
+
+import org.example.Validator;
+import org.example.dto.DomainIpRecord;
+import org.example.services.DomainIpService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Поиск записей в подсети: бинарный поиск диапазона по IP-индексу
+// против линейного прохода по всем записям с проверкой маски.
+// Адреса синтетических данных начинаются с 10.0.0.0, подсети ниже
+// полностью заняты: /24 - 256 записей, /16 - 65536 записей.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class SubnetQueryBenchmark {
+    @Param({"5000000"})
+    public int size;
+
+    @Param({"10.20.30.0/24", "10.20.0.0/16"})
+    public String cidr;
+
+    private DomainIpService domainIpService;
+    private int network;
+    private int mask;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        domainIpService = SyntheticData.service(size);
+        int separator = cidr.indexOf('/');
+        int prefixLength = Integer.parseInt(cidr.substring(separator + 1));
+        mask = -1 << (32 - prefixLength);
+        network = (int) Validator.parseIPv4(cidr.substring(0, separator)) & mask;
+        // Отсортированный список строится один раз, чтобы не мерить его в линейном проходе
+        domainIpService.getAllRecords();
+    }
+
+    // Каждая запись передается в Blackhole: count() у потока известного
+    // размера не обходит элементы и измерял бы только поиск границ
+    @Benchmark
+    public void subnetIndex(Blackhole blackhole) {
+        domainIpService.findRecordsInSubnet(cidr).forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void linearScan(Blackhole blackhole) {
+        for (DomainIpRecord record : domainIpService.getAllRecords()) {
+            if (((int) Validator.parseIPv4(record.getIp()) & mask) == network) {
+                blackhole.consume(record);
+            }
+        }
+    }
+}
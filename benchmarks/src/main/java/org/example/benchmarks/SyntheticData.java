@@ -0,0 +1,78 @@
+package org.example.benchmarks;
+
+import org.example.services.DomainIpService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntFunction;
+
+// Синтетические наборы данных: домен host<i>.example.com, IP 10.0.0.0 + i.
+// Адреса уникальны до 16M записей. Вариант с зонами раскладывает те же
+// записи по 1000 стойкам в 10 дата-центрах: host<i>.rack<i % 1000>.dc<i % 10>.example.com
+final class SyntheticData {
+    private SyntheticData() {
+    }
+
+    static String domain(int i) {
+        return "host" + i + ".example.com";
+    }
+
+    static String zonedDomain(int i) {
+        return "host" + i + ".rack" + (i % 1000) + ".dc" + (i % 10) + ".example.com";
+    }
+
+    static String ip(int i) {
+        int address = (10 << 24) + i;
+        return (address >>> 24) + "." + ((address >>> 16) & 0xFF) + "." + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+
+    static Path writeJsonFile(int size) throws IOException {
+        return writeJsonFile(size, SyntheticData::domain);
+    }
+
+    static Path writeJsonFile(int size, IntFunction<String> domains) throws IOException {
+        Path file = Files.createTempFile("domains-" + size + "-", ".json");
+        file.toFile().deleteOnExit();
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 64 * 1024)) {
+            writer.write("[");
+            for (int i = 0; i < size; i++) {
+                writer.write(i == 0 ? "\n" : ",\n");
+                writer.write("   {\n       \"domain\": \"");
+                writer.write(domains.apply(i));
+                writer.write("\",\n       \"ip\": \"");
+                writer.write(ip(i));
+                writer.write("\"\n   }");
+            }
+            writer.write(size == 0 ? "]" : "\n]");
+        }
+        return file;
+    }
+
+    static DomainIpService service(int size) throws IOException {
+        return service(size, false);
+    }
+
+    static DomainIpService service(int size, boolean concurrent) throws IOException {
+        return service(size, concurrent, SyntheticData::domain);
+    }
+
+    static DomainIpService zonedService(int size) throws IOException {
+        return service(size, false, SyntheticData::zonedDomain);
+    }
+
+    private static DomainIpService service(int size, boolean concurrent, IntFunction<String> domains)
+            throws IOException {
+        Path file = writeJsonFile(size, domains);
+        try {
+            DomainIpService domainIpService = new DomainIpService(concurrent);
+            domainIpService.loadDataFromFile(file.toString());
+            return domainIpService;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.benchmarks;
+
+import org.example.Validator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatorBenchmark {
+    // Прежняя проверка регулярным выражением, для сравнения
+    private static final Pattern IPV4_PATTERN = Pattern.compile(
+            "^((25[0-5]|2[0-4]\\d|[01]?\\d\\d?)\\.){3}(25[0-5]|2[0-4]\\d|[01]?\\d\\d?)$"
+    );
+
+    @Param({"192.168.100.200", "10.0.0.1", "256.1.1.1", "not-an-ip"})
+    public String ip;
+
+    @Benchmark
+    public boolean isNotValidIPv4() {
+        return Validator.isNotValidIPv4(ip);
+    }
+
+    @Benchmark
+    public long parseIPv4() {
+        return Validator.parseIPv4(ip);
+    }
+
+    @Benchmark
+    public boolean regexBaseline() {
+        return !IPV4_PATTERN.matcher(ip).matches();
+    }
+
+    @Benchmark
+    public String validateHost() {
+        return Validator.validateHost("sftp.example.com");
+    }
+}
@@ -0,0 +1,223 @@
+package org.example;
+
+import com.jcraft.jsch.SftpException;
+import org.example.dto.ConflictPolicy;
+import org.example.dto.DomainIpRecord;
+import org.example.dto.ImportReport;
+import org.example.dto.RecordChange;
+import org.example.services.ChangePublisher;
+import org.example.services.DomainIpService;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+// Пакетный режим: команды читаются построчно из файла или stdin,
+// изменения применяются к таблице в памяти, а на сервер выгружаются
+// один раз в конце. Ошибка в строке не прерывает обработку.
+//
+// Команды (пустые строки и строки с # пропускаются):
+//   add <домен> <ip>
+//   remove <домен или ip>
+//   find <домен или ip>
+//   subnet <подсеть, например 10.20.0.0/16>
+//   zone <зона или шаблон, например corp.example.com, *.corp.example.com>
+//   zones <зона> - число записей в подзонах следующего уровня
+//   import <файл JSON> [reject|overwrite|keep-existing]
+public class BatchRunner {
+    private final DomainIpService domainIpService;
+    private final ChangePublisher changePublisher;
+    private final PrintStream output;
+    private final PrintStream errors;
+
+    // Изменения, которые еще не применены, и номера их строк
+    private final List<RecordChange> pending = new ArrayList<>();
+    private final List<Integer> pendingLines = new ArrayList<>();
+    private final List<RecordChange> applied = new ArrayList<>();
+    // Ошибки выводятся по порядку строк вместе с применением пачки
+    private final SortedMap<Integer, String> lineErrors = new TreeMap<>();
+    private int lookups;
+    private int failed;
+
+    public BatchRunner(DomainIpService domainIpService, ChangePublisher changePublisher) {
+        this.domainIpService = domainIpService;
+        this.changePublisher = changePublisher;
+        this.output = System.out;
+        this.errors = System.err;
+    }
+
+    // Возвращает число строк с ошибками
+    public int run(Reader input) throws IOException, SftpException {
+        BufferedReader reader = new BufferedReader(input);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                processLine(line, lineNumber);
+            } catch (IllegalArgumentException e) {
+                reportError(lineNumber, e.getMessage());
+            }
+        }
+        applyPending();
+
+        output.println("Пакет обработан: изменений применено " + applied.size() +
+                ", запросов " + lookups + ", ошибок " + failed + ".");
+        if (!applied.isEmpty()) {
+            changePublisher.publish(applied);
+            output.println("Изменения сохранены на сервер.");
+        }
+        return failed;
+    }
+
+    private void processLine(String line, int lineNumber) {
+        String[] fields = line.split("\\s+");
+        String command = fields[0].toLowerCase(Locale.ROOT);
+        switch (command) {
+            case "add":
+                checkArgumentCount(fields, 3);
+                queue(RecordChange.add(fields[1], fields[2]), lineNumber);
+                break;
+            case "remove":
+                checkArgumentCount(fields, 2);
+                queue(isIp(fields[1])
+                        ? RecordChange.removeByIp(fields[1])
+                        : RecordChange.removeByDomain(fields[1]), lineNumber);
+                break;
+            case "find":
+                checkArgumentCount(fields, 2);
+                // Поиск должен видеть все изменения из предыдущих строк
+                applyPending();
+                find(fields[1]);
+                break;
+            case "subnet":
+                checkArgumentCount(fields, 2);
+                applyPending();
+                findInSubnet(fields[1]);
+                break;
+            case "zone":
+                checkArgumentCount(fields, 2);
+                applyPending();
+                findInZone(fields[1]);
+                break;
+            case "zones":
+                checkArgumentCount(fields, 2);
+                applyPending();
+                countSubzones(fields[1]);
+                break;
+            case "import":
+                if (fields.length != 2 && fields.length != 3) {
+                    throw new IllegalArgumentException(
+                            "Команда import ожидает файл и, при необходимости, политику конфликтов");
+                }
+                applyPending();
+                importFile(fields[1], fields.length == 3 ? ConflictPolicy.parse(fields[2]) : ConflictPolicy.REJECT,
+                        lineNumber);
+                break;
+            default:
+                throw new IllegalArgumentException("Неизвестная команда: " + fields[0]);
+        }
+    }
+
+    private void find(String key) {
+        String result = isIp(key) ? domainIpService.findDomainByIp(key) : domainIpService.findIpByDomain(key);
+        output.println(key + "\t" + (result != null ? result : "не найден"));
+        lookups++;
+    }
+
+    // Строки "домен<TAB>ip", как у find
+    private void findInSubnet(String cidr) {
+        domainIpService.findRecordsInSubnet(cidr)
+                .forEach(record -> output.println(record.getDomain() + "\t" + record.getIp()));
+        lookups++;
+    }
+
+    // Шаблон с "*" ищет по меткам, иначе выводится вся зона
+    private void findInZone(String zone) {
+        List<DomainIpRecord> records = zone.indexOf('*') >= 0
+                ? domainIpService.findRecordsMatching(zone)
+                : domainIpService.findRecordsInZone(zone);
+        for (DomainIpRecord record : records) {
+            output.println(record.getDomain() + "\t" + record.getIp());
+        }
+        lookups++;
+    }
+
+    // Строки "подзона<TAB>число записей", последняя - сама зона целиком
+    private void countSubzones(String zone) {
+        for (Map.Entry<String, Integer> subzone : domainIpService.countRecordsBySubzone(zone).entrySet()) {
+            output.println(subzone.getKey() + "\t" + subzone.getValue());
+        }
+        output.println(zone + "\t" + domainIpService.countRecordsInZone(zone));
+        lookups++;
+    }
+
+    private void importFile(String file, ConflictPolicy policy, int lineNumber) {
+        ImportReport report;
+        try (InputStream inputStream = Files.newInputStream(Paths.get(file))) {
+            report = domainIpService.importRecords(inputStream, policy);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Не удалось прочитать файл импорта " + file + ": " + e.getMessage());
+        }
+
+        output.println("Импорт " + file + ": " + report);
+        for (String issue : report.getIssues()) {
+            output.println("  " + issue);
+        }
+        applied.addAll(report.getChanges());
+        if (report.isAborted() || report.getInvalid() > 0) {
+            reportError(lineNumber, "импорт " + file + " выполнен с ошибками");
+        }
+    }
+
+    private void queue(RecordChange change, int lineNumber) {
+        pending.add(change);
+        pendingLines.add(lineNumber);
+    }
+
+    // Подряд идущие изменения применяются одной пачкой
+    private void applyPending() {
+        if (!pending.isEmpty()) {
+            applyChanges();
+        }
+        for (Map.Entry<Integer, String> error : lineErrors.entrySet()) {
+            errors.println("Строка " + error.getKey() + ": " + error.getValue());
+        }
+        lineErrors.clear();
+    }
+
+    private void applyChanges() {
+        boolean[] rejected = new boolean[pending.size()];
+        domainIpService.applyChanges(pending, (index, e) -> {
+            rejected[index] = true;
+            reportError(pendingLines.get(index), e.getMessage());
+        });
+        for (int i = 0; i < pending.size(); i++) {
+            if (!rejected[i]) {
+                applied.add(pending.get(i));
+            }
+        }
+        pending.clear();
+        pendingLines.clear();
+    }
+
+    private void reportError(int lineNumber, String message) {
+        lineErrors.put(lineNumber, message);
+        failed++;
+    }
+
+    private static void checkArgumentCount(String[] fields, int expected) {
+        if (fields.length != expected) {
+            throw new IllegalArgumentException("Команда " + fields[0] + " ожидает аргументов: " + (expected - 1));
+        }
+    }
+
+    private static boolean isIp(String value) {
+        return !Validator.isNotValidIPv4(value);
+    }
+}
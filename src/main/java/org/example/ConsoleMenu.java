@@ -1,25 +1,26 @@
 package org.example;
 
 import org.example.dto.DomainIpRecord;
+import org.example.dto.RecordChange;
 import org.example.services.DomainIpService;
-import org.example.services.SftpService;
+import org.example.services.WriteBehindQueue;
 
 import java.io.*;
 import java.util.*;
 
 public class ConsoleMenu {
+    private static final int PAGE_SIZE = 50;
+
     private final Scanner scanner;
-    private final SftpService sftpService;
     private final DomainIpService domainIpService;
-    private final String remoteFilePath;
+    private final WriteBehindQueue writeBehindQueue;
     private final PrintStream output;
 
-    public ConsoleMenu(SftpService sftpService, DomainIpService domainIpService, String remoteFilePath) {
+    public ConsoleMenu(DomainIpService domainIpService, WriteBehindQueue writeBehindQueue) {
         this.scanner = new Scanner(System.in);
-        this.sftpService = sftpService;
         this.output = System.out;
         this.domainIpService = domainIpService;
-        this.remoteFilePath = remoteFilePath;
+        this.writeBehindQueue = writeBehindQueue;
     }
 
     public void start() {
@@ -41,12 +42,21 @@ public class ConsoleMenu {
                         findDomainByIp();
                         break;
                     case 4:
-                        addNewRecord();
+                        findRecordsInSubnet();
                         break;
                     case 5:
-                        removeRecord();
+                        findRecordsInZone();
                         break;
                     case 6:
+                        addNewRecord();
+                        break;
+                    case 7:
+                        removeRecord();
+                        break;
+                    case 8:
+                        flushChanges();
+                        break;
+                    case 9:
                         running = false;
                         break;
                     default:
@@ -71,9 +81,12 @@ public class ConsoleMenu {
         output.println("1. Показать все записи");
         output.println("2. Найти IP по домену");
         output.println("3. Найти домен по IP");
-        output.println("4. Добавить новую запись");
-        output.println("5. Удалить запись");
-        output.println("6. Выход");
+        output.println("4. Найти домены в подсети");
+        output.println("5. Найти домены в зоне");
+        output.println("6. Добавить новую запись");
+        output.println("7. Удалить запись");
+        output.println("8. Сохранить изменения на сервер");
+        output.println("9. Выход");
         output.println("========================");
     }
 
@@ -89,15 +102,37 @@ public class ConsoleMenu {
     }
 
     private void showAllRecords() {
-        List<DomainIpRecord> records = domainIpService.getAllRecords();
-        if (records.isEmpty()) {
-            output.println("Список записей пуст.");
-            return;
-        }
+        output.print("Начало доменного имени (Enter - все записи): ");
+        String prefix = scanner.nextLine().trim();
 
-        output.println("\nСписок доменов и IP-адресов:");
-        for (int i = 0; i < records.size(); i++) {
-            output.println((i + 1) + ". " + records.get(i));
+        // Записи выводятся постранично, без копирования всего списка
+        int offset = 0;
+        while (true) {
+            List<DomainIpRecord> page = prefix.isEmpty()
+                    ? domainIpService.getRecords(offset, PAGE_SIZE)
+                    : domainIpService.getRecordsByPrefix(prefix, offset, PAGE_SIZE);
+            if (page.isEmpty()) {
+                if (offset == 0) {
+                    output.println(prefix.isEmpty() ? "Список записей пуст." : "Записи не найдены.");
+                }
+                return;
+            }
+
+            if (offset == 0) {
+                output.println("\nСписок доменов и IP-адресов:");
+            }
+            for (int i = 0; i < page.size(); i++) {
+                output.println((offset + i + 1) + ". " + page.get(i));
+            }
+            offset += page.size();
+
+            if (page.size() < PAGE_SIZE) {
+                return;
+            }
+            output.print("Enter - следующая страница, q - выход из списка: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                return;
+            }
         }
     }
 
@@ -125,6 +160,55 @@ public class ConsoleMenu {
         }
     }
 
+    private void findRecordsInSubnet() {
+        output.print("Введите подсеть (например, 10.20.0.0/16): ");
+        String cidr = scanner.nextLine().trim();
+
+        // Результат читается из потока страницами, без построения полного списка
+        Iterator<DomainIpRecord> records = domainIpService.findRecordsInSubnet(cidr).iterator();
+        if (!records.hasNext()) {
+            output.println("Записи в подсети " + cidr + " не найдены.");
+            return;
+        }
+
+        output.println("\nЗаписи в подсети " + cidr + ":");
+        int shown = 0;
+        while (records.hasNext()) {
+            output.println((shown + 1) + ". " + records.next());
+            shown++;
+            if (shown % PAGE_SIZE == 0 && records.hasNext()) {
+                output.print("Enter - следующая страница, q - выход из списка: ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void findRecordsInZone() {
+        output.print("Введите зону или шаблон (например, corp.example.com или *.corp.example.com): ");
+        String zone = scanner.nextLine().trim();
+
+        List<DomainIpRecord> records = zone.indexOf('*') >= 0
+                ? domainIpService.findRecordsMatching(zone)
+                : domainIpService.findRecordsInZone(zone);
+        if (records.isEmpty()) {
+            output.println("Записи в зоне " + zone + " не найдены.");
+            return;
+        }
+
+        output.println("\nЗаписи в зоне " + zone + " (" + records.size() + "):");
+        for (int i = 0; i < records.size(); i++) {
+            output.println((i + 1) + ". " + records.get(i));
+            if ((i + 1) % PAGE_SIZE == 0 && i + 1 < records.size()) {
+                output.print("Enter - следующая страница, q - выход из списка: ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    return;
+                }
+            }
+        }
+    }
+
     private void addNewRecord() {
         try {
             output.print("Введите доменное имя: ");
@@ -133,8 +217,7 @@ public class ConsoleMenu {
             output.print("Введите IP-адрес: ");
             String ip = scanner.nextLine().trim();
 
-            domainIpService.addRecord(domain, ip);
-            saveChangesToServer();
+            applyChange(RecordChange.add(domain, ip));
             output.println("Запись успешно добавлена.");
 
         } catch (Exception e) {
@@ -153,15 +236,13 @@ public class ConsoleMenu {
             if (choice == 1) {
                 output.print("Введите доменное имя для удаления: ");
                 String domain = scanner.nextLine().trim();
-                domainIpService.removeRecordByDomain(domain);
-                saveChangesToServer();
+                applyChange(RecordChange.removeByDomain(domain));
                 output.println("Запись успешно удалена.");
 
             } else if (choice == 2) {
                 output.print("Введите IP-адрес для удаления: ");
                 String ip = scanner.nextLine().trim();
-                domainIpService.removeRecordByIp(ip);
-                saveChangesToServer();
+                applyChange(RecordChange.removeByIp(ip));
                 output.println("Запись успешно удалена.");
 
             } else {
@@ -172,13 +253,30 @@ public class ConsoleMenu {
         }
     }
 
+    // Изменение применяется сразу, выгрузка на сервер - по правилам очереди
+    private void applyChange(RecordChange change) throws Exception {
+        if (writeBehindQueue.apply(change)) {
+            saveChangesToServer();
+        } else {
+            output.println("Изменений ожидает выгрузки: " + writeBehindQueue.getPendingCount());
+        }
+    }
+
     private void saveChangesToServer() {
         try {
-            File tempFile = File.createTempFile("domains_update", ".json");
-            domainIpService.saveDataToFile(tempFile.getAbsolutePath());
-            sftpService.uploadFile(tempFile.getAbsolutePath(), remoteFilePath);
-            tempFile.delete();
+            writeBehindQueue.flush();
+        } catch (Exception e) {
+            output.println("Ошибка при сохранении на сервер: " + e.getMessage());
+        }
+    }
 
+    private void flushChanges() {
+        try {
+            if (writeBehindQueue.flush()) {
+                output.println("Изменения сохранены на сервер.");
+            } else {
+                output.println("Нет несохраненных изменений.");
+            }
         } catch (Exception e) {
             output.println("Ошибка при сохранении на сервер: " + e.getMessage());
         }
@@ -1,37 +1,98 @@
 package org.example;
 
 import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 import org.example.dto.Arguments;
+import org.example.dto.PushReport;
+import org.example.dto.SftpTarget;
+import org.example.services.ChangeJournal;
+import org.example.services.ChangePublisher;
 import org.example.services.DomainIpService;
+import org.example.services.FanOutPublisher;
+import org.example.services.GzipCodec;
+import org.example.services.LookupHttpServer;
+import org.example.services.Metrics;
+import org.example.services.RemoteFileRefresher;
+import org.example.services.RemoteFileCache;
+import org.example.services.SegmentedDownloader;
+import org.example.services.SftpChannelPool;
 import org.example.services.SftpService;
+import org.example.services.WriteBehindQueue;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.example.Validator.validateAndSanitizeArguments;
 
 public class Main {
-    private static final String PATH_TO_DOMAINS = "/upload/domains.json";
+    private static final String DEFAULT_REMOTE_FILE = "/upload/domains.json";
 
     public static void main(String[] args) {
         try {
             Arguments validatedArgs = validateAndSanitizeArguments(args);
+            List<SftpTarget> pushTargets = readPushTargets(validatedArgs);
 
             SftpService sftpService = null;
-            DomainIpService domainIpService = new DomainIpService();
+            WriteBehindQueue writeBehindQueue = null;
+            LookupHttpServer httpServer = null;
+            RemoteFileRefresher refresher = null;
+            // HTTP-запросы читают данные параллельно с правками из консоли
+            DomainIpService domainIpService = new DomainIpService(validatedArgs.hasOption("--http-port"));
+            boolean failed = false;
+            startMetrics(validatedArgs);
 
             try {
                 sftpService = createSftpService(validatedArgs);
-                connectAndProcessSftp(validatedArgs, sftpService, domainIpService);
-                runConsoleMenu(sftpService, domainIpService);
+                ChangeJournal journal = createChangeJournal(validatedArgs, sftpService);
+                SftpATTRS loadedAttrs = connectAndProcessSftp(validatedArgs, sftpService, domainIpService, journal);
+                ChangePublisher publisher = new ChangePublisher(sftpService, domainIpService,
+                        remoteFile(validatedArgs), journal, compressionLevel(validatedArgs));
+                publisher.setRemoteAttributes(loadedAttrs);
+                httpServer = startHttpServer(validatedArgs, domainIpService);
+                if (validatedArgs.hasOption("--batch")) {
+                    failed = runBatch(validatedArgs, domainIpService, publisher) > 0;
+                }
+                if (pushTargets != null) {
+                    failed |= pushToTargets(validatedArgs, pushTargets, domainIpService) > 0;
+                }
+                if (!validatedArgs.hasOption("--batch") && pushTargets == null) {
+                    writeBehindQueue = createWriteBehindQueue(validatedArgs, domainIpService, publisher);
+                    refresher = startRefresher(validatedArgs, writeBehindQueue, journal != null);
+                    runConsoleMenu(domainIpService, writeBehindQueue);
+                }
             } catch (JSchException | SftpException e) {
                 handleSftpError(e, validatedArgs);
+                failed = true;
             } catch (IOException e) {
                 handleIoError(e);
+                failed = true;
             } catch (Exception e) {
                 handleUnexpectedError(e);
+                failed = true;
             } finally {
-                safeDisconnect(sftpService);
+                if (refresher != null) {
+                    refresher.close();
+                }
+                if (httpServer != null) {
+                    httpServer.close();
+                }
+                safeDisconnect(sftpService, writeBehindQueue);
+                stopMetrics(validatedArgs);
+            }
+
+            // Ненулевой код возврата нужен скриптам, которые запускают пакетный режим
+            if (failed) {
+                System.exit(1);
             }
 
         } catch (IllegalArgumentException e) {
@@ -45,27 +106,302 @@ public class Main {
                 args.getUsername(), args.getPassword());
     }
 
-    private static void connectAndProcessSftp(Arguments validatedArgs,
+    // Файл данных на сервере; файл .gz читается и пишется сжатым, см. GzipCodec
+    private static String remoteFile(Arguments args) {
+        return args.hasOption("--remote-file") ? args.getOption("--remote-file") : DEFAULT_REMOTE_FILE;
+    }
+
+    private static int compressionLevel(Arguments args) {
+        return args.getIntOption("--gzip-level", GzipCodec.DEFAULT_LEVEL);
+    }
+
+    // Метрики всегда доступны через JMX; --metrics-interval включает их периодический вывод
+    private static void startMetrics(Arguments args) {
+        Metrics.registerMBean();
+        if (args.hasOption("--metrics-interval")) {
+            Metrics.get().startDump(args.getIntOption("--metrics-interval", 0), System.err);
+        }
+    }
+
+    private static void stopMetrics(Arguments args) {
+        if (args.hasOption("--metrics-interval")) {
+            Metrics.get().stopDump();
+            System.err.println(Metrics.get().getReport());
+        }
+    }
+
+    // Журнал изменений включается параметром --journal
+    private static ChangeJournal createChangeJournal(Arguments args, SftpService sftpService) {
+        if (!args.hasOption("--journal")) {
+            return null;
+        }
+        return new ChangeJournal(sftpService, remoteFile(args),
+                args.getIntOption("--journal-max-entries", ChangeJournal.DEFAULT_MAX_ENTRIES),
+                args.getIntOption("--journal-max-age", (int) ChangeJournal.DEFAULT_MAX_AGE_MINUTES),
+                compressionLevel(args));
+    }
+
+    // По умолчанию каждое изменение выгружается сразу
+    private static WriteBehindQueue createWriteBehindQueue(Arguments args, DomainIpService domainIpService,
+                                                           ChangePublisher publisher) {
+        return new WriteBehindQueue(domainIpService, publisher,
+                args.getIntOption("--flush-every", WriteBehindQueue.DEFAULT_MAX_PENDING),
+                args.getIntOption("--flush-interval", 0));
+    }
+
+    // Возвращает атрибуты файла на сервере, на которых основаны загруженные данные
+    private static SftpATTRS connectAndProcessSftp(Arguments validatedArgs,
                                               SftpService sftpService,
-                                              DomainIpService domainIpService)
-            throws JSchException, SftpException, IOException {
+                                              DomainIpService domainIpService,
+                                              ChangeJournal journal)
+            throws JSchException, SftpException, IOException, InterruptedException {
 
         System.out.println("Подключение к SFTP-серверу " +
                 validatedArgs.getHost() + ":" + validatedArgs.getPort() + "...");
+        long startTime = System.nanoTime();
         sftpService.connect();
         System.out.println("Подключение установлено успешно!");
-        String localFilePath = sftpService.downloadFile(PATH_TO_DOMAINS);
-        domainIpService.loadDataFromFile(localFilePath);
-        System.out.println("Данные успешно загружены из файла.");
+
+        long loadStartTime = System.nanoTime();
+        SftpATTRS attrs = loadDomains(validatedArgs, sftpService, domainIpService);
+        if (journal != null) {
+            int failed = journal.replay(domainIpService);
+            System.out.println("Применено изменений из журнала: " + (journal.getEntryCount() - failed) +
+                    " из " + journal.getEntryCount() + ".");
+        }
+        long readyTime = System.nanoTime();
+
+        System.out.println("Данные успешно загружены: " + domainIpService.getRecordCount() + " записей.");
+        System.out.println("Загрузка: " + toMillis(readyTime - loadStartTime) + " мс, " +
+                "время до первого запроса: " + toMillis(readyTime - startTime) + " мс.");
+        return attrs;
+    }
+
+    // Атрибуты читаются до скачивания: если файл изменится в процессе,
+    // выгрузка изменений заметит расхождение и не затрет чужую версию
+    private static SftpATTRS loadDomains(Arguments args, SftpService sftpService, DomainIpService domainIpService)
+            throws JSchException, SftpException, IOException, InterruptedException {
+        String remoteFile = remoteFile(args);
+        SftpATTRS attrs = sftpService.stat(remoteFile);
+        RemoteFileCache cache = createRemoteFileCache(args);
+        if (cache == null) {
+            if (args.hasOption("--parallel-download")) {
+                loadWithSegmentedDownload(args, domainIpService, null, null);
+            } else {
+                // Разбор идет параллельно с передачей, без временного файла
+                try (InputStream inputStream = sftpService.openDownloadStream(remoteFile)) {
+                    domainIpService.loadData(inputStream);
+                }
+            }
+            return attrs;
+        }
+
+        Path cachedFile = cache.find(remoteFile, attrs);
+        if (cachedFile != null && args.hasOption("--cache-verify")) {
+            // Защита от перезаписи файла с тем же размером и временем изменения
+            try (InputStream inputStream = sftpService.openDownloadStream(remoteFile)) {
+                if (!RemoteFileCache.checksum(inputStream).equals(cache.getChecksum(remoteFile))) {
+                    cachedFile = null;
+                }
+            }
+        }
+
+        if (cachedFile != null) {
+            System.out.println("Файл на сервере не изменился, данные загружаются из локального кэша.");
+            loadFromCache(cache, remoteFile, cachedFile, domainIpService);
+            return attrs;
+        }
+
+        if (args.hasOption("--parallel-download")) {
+            loadWithSegmentedDownload(args, domainIpService, cache, attrs);
+        } else {
+            try (RemoteFileCache.CachingInputStream inputStream = cache.cacheWhileReading(remoteFile, attrs,
+                    sftpService.openDownloadStream(remoteFile))) {
+                domainIpService.loadData(inputStream);
+                inputStream.complete();
+            }
+        }
+        cache.saveSnapshot(remoteFile, domainIpService);
+        return attrs;
+    }
+
+    // Двоичный снимок загружается без разбора JSON; при ошибке читается сама копия
+    private static void loadFromCache(RemoteFileCache cache, String remoteFile, Path cachedFile,
+                                      DomainIpService domainIpService)
+            throws IOException {
+        Path snapshotFile = cache.findSnapshot(remoteFile);
+        if (snapshotFile != null) {
+            try {
+                domainIpService.loadSnapshot(snapshotFile);
+                return;
+            } catch (IOException e) {
+                System.err.println("Не удалось прочитать снимок данных: " + e.getMessage());
+            }
+        }
+        domainIpService.loadDataFromFile(cachedFile.toString());
+        cache.saveSnapshot(remoteFile, domainIpService);
+    }
+
+    private static RemoteFileCache createRemoteFileCache(Arguments args) {
+        if (!args.hasOption("--cache") && !args.hasOption("--cache-dir")) {
+            return null;
+        }
+        Path directory = args.hasOption("--cache-dir")
+                ? Paths.get(args.getOption("--cache-dir"))
+                : RemoteFileCache.defaultDirectory();
+        return new RemoteFileCache(directory, args.getHost(), args.getPort());
+    }
+
+    // Большой файл скачивается частями по нескольким каналам во временный файл
+    private static void loadWithSegmentedDownload(Arguments args, DomainIpService domainIpService,
+                                                  RemoteFileCache cache, SftpATTRS attrs)
+            throws JSchException, SftpException, IOException, InterruptedException {
+        int parallelism = args.getIntOption("--parallel-download", SftpChannelPool.DEFAULT_MAX_SIZE);
+        long segmentSize = args.getIntOption("--segment-size", SegmentedDownloader.DEFAULT_SEGMENT_SIZE_MB) * 1024L * 1024L;
+
+        Path tempFile = Files.createTempFile("domains", ".json");
+        try (SftpChannelPool pool = new SftpChannelPool(args.getHost(), args.getPort(), args.getUsername(),
+                args.getPassword(), parallelism, SftpChannelPool.DEFAULT_IDLE_TIMEOUT_SECONDS)) {
+            new SegmentedDownloader(pool, segmentSize, parallelism).download(remoteFile(args), tempFile);
+            domainIpService.loadDataFromFile(tempFile.toString());
+            if (cache != null) {
+                cache.store(remoteFile(args), attrs, tempFile);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    // HTTP-поиск включается параметром --http-port
+    private static LookupHttpServer startHttpServer(Arguments args, DomainIpService domainIpService)
+            throws IOException {
+        if (!args.hasOption("--http-port")) {
+            return null;
+        }
+        String bindAddress = args.hasOption("--http-bind")
+                ? args.getOption("--http-bind")
+                : LookupHttpServer.DEFAULT_BIND_ADDRESS;
+        LookupHttpServer httpServer = new LookupHttpServer(domainIpService, bindAddress,
+                args.getIntOption("--http-port", 0),
+                args.getIntOption("--http-threads", LookupHttpServer.DEFAULT_THREADS));
+        httpServer.start();
+        System.out.println("HTTP-поиск доступен на " + bindAddress + ":" + httpServer.getPort() + ".");
+        return httpServer;
+    }
+
+    // Фоновая синхронизация включается параметром --refresh-interval
+    private static RemoteFileRefresher startRefresher(Arguments args, WriteBehindQueue writeBehindQueue,
+                                                      boolean withJournal) throws Exception {
+        if (!args.hasOption("--refresh-interval")) {
+            return null;
+        }
+        int interval = args.getIntOption("--refresh-interval", 0);
+        // Соединение держится открытым между опросами
+        SftpChannelPool pool = new SftpChannelPool(args.getHost(), args.getPort(), args.getUsername(),
+                args.getPassword(), 1, Math.max(SftpChannelPool.DEFAULT_IDLE_TIMEOUT_SECONDS, interval * 2L));
+        RemoteFileRefresher refresher = new RemoteFileRefresher(pool, remoteFile(args), withJournal, writeBehindQueue,
+                interval, args.getIntOption("--refresh-max-backoff",
+                (int) RemoteFileRefresher.DEFAULT_MAX_BACKOFF_SECONDS));
+        try {
+            refresher.start();
+        } catch (Exception e) {
+            refresher.close();
+            throw e;
+        }
+        return refresher;
+    }
+
+    // Пакетный режим: --batch <файл> или --batch - для чтения из stdin
+    private static int runBatch(Arguments args, DomainIpService domainIpService, ChangePublisher publisher)
+            throws SftpException, IOException {
+        BatchRunner batchRunner = new BatchRunner(domainIpService, publisher);
+        String source = args.getOption("--batch");
+        if (source.equals("-")) {
+            return batchRunner.run(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        try (Reader reader = Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8)) {
+            return batchRunner.run(reader);
+        }
     }
 
-    private static void runConsoleMenu(SftpService sftpService,
-                                       DomainIpService domainIpService) {
-        ConsoleMenu menu = new ConsoleMenu(sftpService, domainIpService, PATH_TO_DOMAINS);
+    // Список серверов для --push-to: строки "хост порт [пользователь пароль]",
+    // без учетных данных используются указанные в командной строке.
+    // Пустые строки и строки с # пропускаются
+    private static List<SftpTarget> readPushTargets(Arguments args) {
+        if (!args.hasOption("--push-to")) {
+            return null;
+        }
+        String source = args.getOption("--push-to");
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(source), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Не удалось прочитать список серверов " + source + ": " + e.getMessage());
+        }
+
+        List<SftpTarget> targets = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length != 2 && fields.length != 4) {
+                throw new IllegalArgumentException("Список серверов, строка " + (i + 1) +
+                        ": ожидается хост, порт и, при необходимости, пользователь и пароль");
+            }
+            try {
+                targets.add(new SftpTarget(Validator.validateHost(fields[0]), Validator.validatePort(fields[1]),
+                        fields.length == 4 ? Validator.validateUsername(fields[2]) : args.getUsername(),
+                        fields.length == 4 ? Validator.validatePassword(fields[3]) : args.getPassword()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Список серверов, строка " + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("Список серверов " + source + " пуст");
+        }
+        return targets;
+    }
+
+    // Возвращает число серверов, на которые выгрузить не удалось
+    private static int pushToTargets(Arguments args, List<SftpTarget> targets, DomainIpService domainIpService)
+            throws IOException, InterruptedException {
+        FanOutPublisher fanOutPublisher = new FanOutPublisher(targets, remoteFile(args),
+                args.getIntOption("--push-threads", FanOutPublisher.DEFAULT_PARALLELISM),
+                args.getIntOption("--push-attempts", FanOutPublisher.DEFAULT_ATTEMPTS),
+                args.getIntOption("--push-timeout", FanOutPublisher.DEFAULT_TIMEOUT_SECONDS),
+                compressionLevel(args));
+        System.out.println("Выгрузка " + domainIpService.getRecordCount() + " записей на серверов: " +
+                targets.size() + "...");
+        PushReport report = fanOutPublisher.publish(domainIpService);
+        for (PushReport.TargetResult result : report.getResults()) {
+            (result.isSuccess() ? System.out : System.err).println("  " + result);
+        }
+        System.out.println(report + ".");
+        return report.getFailed();
+    }
+
+    private static void runConsoleMenu(DomainIpService domainIpService,
+                                       WriteBehindQueue writeBehindQueue) {
+        ConsoleMenu menu = new ConsoleMenu(domainIpService, writeBehindQueue);
         menu.start();
     }
 
-    private static void safeDisconnect(SftpService sftpService) {
+    private static void safeDisconnect(SftpService sftpService, WriteBehindQueue writeBehindQueue) {
+        // Несохраненные изменения выгружаются до закрытия соединения
+        if (writeBehindQueue != null) {
+            try {
+                writeBehindQueue.close();
+            } catch (Exception e) {
+                System.err.println("Ошибка при сохранении изменений на сервер: " +
+                        e.getMessage());
+            }
+        }
         if (sftpService != null) {
             try {
                 sftpService.disconnect();
@@ -105,8 +441,49 @@ public class Main {
     }
 
     private static void printUsage() {
-        System.err.println("\nИспользование: java -jar sftp-client.jar <host> <port> <username> <password>");
+        System.err.println("\nИспользование: java -jar sftp-client.jar <host> <port> <username> <password> [параметры]");
         System.err.println("Пример: java -jar sftp-client.jar localhost 2222 user password");
+        System.err.println("\nПараметры:");
+        System.err.println("    --remote-file <путь>        файл данных на сервере (по умолчанию " + DEFAULT_REMOTE_FILE + ");");
+        System.err.println("                                файл .gz пишется сжатым, сжатый gzip читается под любым именем");
+        System.err.println("    --gzip-level <1-9>          уровень сжатия файла .gz (по умолчанию " +
+                GzipCodec.DEFAULT_LEVEL + ")");
+        System.err.println("    --journal                   дописывать изменения в журнал вместо полной выгрузки файла");
+        System.err.println("    --journal-max-entries <n>   свернуть журнал после n изменений (по умолчанию " +
+                ChangeJournal.DEFAULT_MAX_ENTRIES + ")");
+        System.err.println("    --journal-max-age <мин>     свернуть журнал, если он старше указанного времени (по умолчанию " +
+                ChangeJournal.DEFAULT_MAX_AGE_MINUTES + ")");
+        System.err.println("    --flush-every <n>           выгружать изменения на сервер пачками по n (по умолчанию " +
+                WriteBehindQueue.DEFAULT_MAX_PENDING + ")");
+        System.err.println("    --flush-interval <сек>      дополнительно выгружать накопленные изменения по таймеру");
+        System.err.println("    --parallel-download <n>     скачивать файл частями по n каналам");
+        System.err.println("    --segment-size <МБ>         размер части при скачивании (по умолчанию " +
+                SegmentedDownloader.DEFAULT_SEGMENT_SIZE_MB + ")");
+        System.err.println("    --cache                     хранить локальную копию файла и не скачивать его без изменений");
+        System.err.println("    --cache-dir <путь>          каталог локального кэша (по умолчанию ~/.sftp-client/cache)");
+        System.err.println("    --cache-verify              сверять контрольную сумму файла на сервере с копией в кэше");
+        System.err.println("    --batch <файл|->            выполнить команды из файла или stdin и выгрузить изменения один раз");
+        System.err.println("                                команды: add <домен> <ip>, remove <домен|ip>, find <домен|ip>,");
+        System.err.println("                                subnet <адрес/префикс>, zone <зона|*.зона>, zones <зона>,");
+        System.err.println("                                import <файл JSON> [reject|overwrite|keep-existing]");
+        System.err.println("    --http-port <порт>          отвечать на запросы поиска по HTTP (GET /lookup, POST /lookup/batch)");
+        System.err.println("    --http-bind <адрес>         адрес HTTP-сервера (по умолчанию " +
+                LookupHttpServer.DEFAULT_BIND_ADDRESS + ")");
+        System.err.println("    --http-threads <n>          потоков HTTP-сервера (по умолчанию " +
+                LookupHttpServer.DEFAULT_THREADS + ")");
+        System.err.println("    --refresh-interval <сек>    проверять файл на сервере и подгружать изменения других операторов");
+        System.err.println("    --refresh-max-backoff <сек> наибольший интервал повтора после ошибок (по умолчанию " +
+                RemoteFileRefresher.DEFAULT_MAX_BACKOFF_SECONDS + ")");
+        System.err.println("    --push-to <файл>            выгрузить таблицу (после --batch, если он задан) на все серверы");
+        System.err.println("                                из файла, по строке \"хост порт [пользователь пароль]\"");
+        System.err.println("    --push-threads <n>          одновременных выгрузок (по умолчанию " +
+                FanOutPublisher.DEFAULT_PARALLELISM + ")");
+        System.err.println("    --push-attempts <n>         попыток на сервер (по умолчанию " +
+                FanOutPublisher.DEFAULT_ATTEMPTS + ")");
+        System.err.println("    --push-timeout <сек>        таймаут подключения и чтения на сервер (по умолчанию " +
+                FanOutPublisher.DEFAULT_TIMEOUT_SECONDS + ")");
+        System.err.println("    --metrics-interval <сек>    выводить метрики в stderr с указанным интервалом и при выходе");
+        System.err.println("                                (метрики также доступны по JMX: org.example:type=Metrics)");
         System.err.println("\nПравила валидации:");
         System.err.println("    - host: только буквы, цифры, точки, дефисы");
         System.err.println("    - port: число 1-65535");
@@ -1,17 +1,54 @@
 package org.example;
 
 import org.example.dto.Arguments;
+import org.example.services.GzipCodec;
 
+import java.util.*;
 import java.util.regex.Pattern;
 
 public class Validator {
-    private static final Pattern IPV4_PATTERN = Pattern.compile(
-            "^((25[0-5]|2[0-4]\\d|[01]?\\d\\d?)\\.){3}(25[0-5]|2[0-4]\\d|[01]?\\d\\d?)$"
-    );
+    private static final Pattern HOST_PATTERN = Pattern.compile("^[a-zA-Z0-9.-]+$");
+    private static final Pattern USERNAME_PATTERN = Pattern.compile("^[a-zA-Z0-9_.-]+$");
+    private static final String FORBIDDEN_PASSWORD_CHARS = ";|&$><";
+
+    // Параметры-флаги и параметры со значением, допустимые после обязательных аргументов
+    private static final Set<String> FLAG_OPTIONS = new HashSet<>(Arrays.asList(
+            "--journal",
+            "--cache",
+            "--cache-verify"
+    ));
+    private static final Set<String> INT_OPTIONS = new HashSet<>(Arrays.asList(
+            "--journal-max-entries",
+            "--journal-max-age",
+            "--flush-every",
+            "--flush-interval",
+            "--parallel-download",
+            "--segment-size",
+            "--http-threads",
+            "--refresh-interval",
+            "--refresh-max-backoff",
+            "--metrics-interval",
+            "--push-threads",
+            "--push-attempts",
+            "--push-timeout",
+            "--gzip-level"
+    ));
+    // Номера портов проверяются отдельно: 1-65535
+    private static final Set<String> PORT_OPTIONS = new HashSet<>(Arrays.asList(
+            "--http-port"
+    ));
+    private static final Set<String> STRING_OPTIONS = new HashSet<>(Arrays.asList(
+            "--cache-dir",
+            "--batch",
+            "--http-bind",
+            "--push-to",
+            "--remote-file"
+    ));
+    private static final int REQUIRED_ARGUMENTS = 4;
 
     public static Arguments validateAndSanitizeArguments(String[] args) {
 
-        if (args.length != 4) {
+        if (args.length < REQUIRED_ARGUMENTS) {
             throw new IllegalArgumentException("Неверное количество аргументов");
         }
 
@@ -20,17 +57,62 @@ public class Validator {
                 validateHost(args[0]),
                 validatePort(args[1]),
                 validateUsername(args[2]),
-                validatePassword(args[3])
+                validatePassword(args[3]),
+                validateOptions(args)
         );
     }
 
+    public static Map<String, String> validateOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = REQUIRED_ARGUMENTS; i < args.length; i++) {
+            String name = args[i];
+            if (FLAG_OPTIONS.contains(name)) {
+                options.put(name, "");
+            } else if (INT_OPTIONS.contains(name)) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Не указано значение параметра " + name);
+                }
+                options.put(name, String.valueOf(validatePositiveInt(args[++i], name)));
+            } else if (PORT_OPTIONS.contains(name)) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Не указано значение параметра " + name);
+                }
+                options.put(name, String.valueOf(validatePort(args[++i])));
+            } else if (STRING_OPTIONS.contains(name)) {
+                if (i + 1 >= args.length || args[i + 1].trim().isEmpty()) {
+                    throw new IllegalArgumentException("Не указано значение параметра " + name);
+                }
+                options.put(name, args[++i].trim());
+            } else {
+                throw new IllegalArgumentException("Неизвестный параметр: " + name);
+            }
+        }
+        if (options.containsKey("--gzip-level")
+                && Integer.parseInt(options.get("--gzip-level")) > GzipCodec.MAX_LEVEL) {
+            throw new IllegalArgumentException("Уровень сжатия --gzip-level должен быть от 1 до " + GzipCodec.MAX_LEVEL);
+        }
+        return options;
+    }
+
+    public static int validatePositiveInt(String value, String name) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result < 1) {
+                throw new IllegalArgumentException("Значение " + name + " должно быть больше нуля: " + result);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Значение " + name + " должно быть числом: " + value);
+        }
+    }
+
     public static String validateHost(String host) {
         if (host == null || host.trim().isEmpty()) {
             throw new IllegalArgumentException("Хост не может быть пустым");
         }
         host = host.trim();
 
-        if (!host.matches("^[a-zA-Z0-9.-]+$")) {
+        if (!HOST_PATTERN.matcher(host).matches()) {
             throw new IllegalArgumentException("Хост содержит запрещенные символы");
         }
 
@@ -56,11 +138,11 @@ public class Validator {
 
         String trimmed = username.trim();
 
-        if (!trimmed.matches("^[a-zA-Z0-9_.-]+$")) {
+        if (!USERNAME_PATTERN.matcher(trimmed).matches()) {
             throw new IllegalArgumentException("Имя пользователя содержит запрещенные символы.");
         }
 
-        if (trimmed.matches("^[-].*")) {
+        if (trimmed.charAt(0) == '-') {
             throw new IllegalArgumentException("Имя пользователя не может начинаться с дефиса");
         }
 
@@ -77,8 +159,10 @@ public class Validator {
         }
         password = password.trim();
 
-        if (password.matches(".*[;|&$><].*")) {
-            throw new IllegalArgumentException("Пароль содержит запрещенные символы");
+        for (int i = 0; i < password.length(); i++) {
+            if (FORBIDDEN_PASSWORD_CHARS.indexOf(password.charAt(i)) >= 0) {
+                throw new IllegalArgumentException("Пароль содержит запрещенные символы");
+            }
         }
 
         if (password.length() > 100) {
@@ -89,6 +173,53 @@ public class Validator {
     }
 
     public static boolean isNotValidIPv4(String ip) {
-        return !IPV4_PATTERN.matcher(ip).matches();
+        return parseIPv4(ip) < 0;
+    }
+
+    // Разбор IPv4 за один проход без выделения памяти.
+    // Возвращает адрес в младших 32 битах или -1, если строка не является адресом:
+    // ровно четыре группы по 1-3 цифры со значением не больше 255
+    // (ведущие нули допускаются), разделенные точками.
+    public static long parseIPv4(String ip) {
+        if (ip == null) {
+            return -1;
+        }
+        int length = ip.length();
+        if (length < 7 || length > 15) {
+            return -1;
+        }
+
+        long result = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = 0; i < length; i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > 3) {
+                    return -1;
+                }
+                octet = octet * 10 + (c - '0');
+            } else if (c == '.') {
+                if (digits == 0 || octet > 255 || ++dots > 3) {
+                    return -1;
+                }
+                result = (result << 8) | octet;
+                octet = 0;
+                digits = 0;
+            } else {
+                return -1;
+            }
+        }
+
+        if (dots != 3 || digits == 0 || octet > 255) {
+            return -1;
+        }
+        return (result << 8) | octet;
+    }
+
+    // Обратное к parseIPv4: адрес в младших 32 битах -> "a.b.c.d" без ведущих нулей
+    public static String formatIPv4(int ip) {
+        return (ip >>> 24) + "." + ((ip >>> 16) & 0xFF) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF);
     }
 }
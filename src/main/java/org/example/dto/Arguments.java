@@ -1,16 +1,25 @@
 package org.example.dto;
 
+import java.util.Collections;
+import java.util.Map;
+
 public class Arguments {
     private final String host;
     private final int port;
     private final String username;
     private final String password;
+    private final Map<String, String> options;
 
     public Arguments(String host, int port, String username, String password) {
+        this(host, port, username, password, Collections.<String, String>emptyMap());
+    }
+
+    public Arguments(String host, int port, String username, String password, Map<String, String> options) {
         this.host = host;
         this.port = port;
         this.username = username;
         this.password = password;
+        this.options = options;
     }
 
     public String getHost() {
@@ -28,4 +37,18 @@ public class Arguments {
     public String getPassword() {
         return password;
     }
+
+    public boolean hasOption(String name) {
+        return options.containsKey(name);
+    }
+
+    public String getOption(String name) {
+        return options.get(name);
+    }
+
+    // Числовые параметры проверяются в Validator при разборе аргументов
+    public int getIntOption(String name, int defaultValue) {
+        String value = options.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
 }
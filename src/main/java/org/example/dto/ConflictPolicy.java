@@ -0,0 +1,23 @@
+package org.example.dto;
+
+import java.util.Locale;
+
+// Что делать при импорте, если запись противоречит уже существующей
+// (домен связан с другим IP или IP занят другим доменом)
+public enum ConflictPolicy {
+    // Импорт отменяется целиком
+    REJECT,
+    // Существующие записи заменяются импортируемыми
+    OVERWRITE,
+    // Конфликтующие записи импорта пропускаются
+    KEEP_EXISTING;
+
+    public static ConflictPolicy parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестная политика конфликтов: " + value +
+                    " (допустимо: reject, overwrite, keep-existing)");
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.dto;
+
+import java.util.List;
+
+// Итог массового импорта записей
+public class ImportReport {
+    private final int total;
+    private final int added;
+    private final int overwritten;
+    private final int unchanged;
+    private final int keptExisting;
+    private final int invalid;
+    private final int duplicates;
+    private final int conflicts;
+    private final boolean aborted;
+    // Описания первых ошибок и конфликтов
+    private final List<String> issues;
+    // Примененные изменения в порядке применения, для выгрузки на сервер
+    private final List<RecordChange> changes;
+
+    public ImportReport(int total, int added, int overwritten, int unchanged, int keptExisting,
+                        int invalid, int duplicates, int conflicts, boolean aborted,
+                        List<String> issues, List<RecordChange> changes) {
+        this.total = total;
+        this.added = added;
+        this.overwritten = overwritten;
+        this.unchanged = unchanged;
+        this.keptExisting = keptExisting;
+        this.invalid = invalid;
+        this.duplicates = duplicates;
+        this.conflicts = conflicts;
+        this.aborted = aborted;
+        this.issues = issues;
+        this.changes = changes;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getOverwritten() {
+        return overwritten;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public int getKeptExisting() {
+        return keptExisting;
+    }
+
+    public int getInvalid() {
+        return invalid;
+    }
+
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    public int getConflicts() {
+        return conflicts;
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public List<String> getIssues() {
+        return issues;
+    }
+
+    public List<RecordChange> getChanges() {
+        return changes;
+    }
+
+    @Override
+    public String toString() {
+        return (aborted ? "Импорт отменен из-за конфликтов. " : "") +
+                "Записей: " + total +
+                ", добавлено: " + added +
+                ", заменено: " + overwritten +
+                ", без изменений: " + unchanged +
+                ", оставлено существующих: " + keptExisting +
+                ", некорректных: " + invalid +
+                ", повторов: " + duplicates +
+                ", конфликтов: " + conflicts;
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.dto;
+
+import java.util.List;
+
+// Итог выгрузки таблицы на несколько серверов
+public class PushReport {
+    // Результат по одному серверу
+    public static class TargetResult {
+        private final SftpTarget target;
+        private final boolean success;
+        private final int attempts;
+        private final long millis;
+        // Ошибка последней попытки; null при успехе
+        private final String error;
+
+        public TargetResult(SftpTarget target, boolean success, int attempts, long millis, String error) {
+            this.target = target;
+            this.success = success;
+            this.attempts = attempts;
+            this.millis = millis;
+            this.error = error;
+        }
+
+        public SftpTarget getTarget() {
+            return target;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return target + ": " + (success ? "выгружено" : "ошибка: " + error) +
+                    ", попыток: " + attempts + ", " + millis + " мс";
+        }
+    }
+
+    // В порядке серверов в списке
+    private final List<TargetResult> results;
+    private final long fileSize;
+    private final long millis;
+
+    public PushReport(List<TargetResult> results, long fileSize, long millis) {
+        this.results = results;
+        this.fileSize = fileSize;
+        this.millis = millis;
+    }
+
+    public List<TargetResult> getResults() {
+        return results;
+    }
+
+    public int getSucceeded() {
+        int succeeded = 0;
+        for (TargetResult result : results) {
+            if (result.isSuccess()) {
+                succeeded++;
+            }
+        }
+        return succeeded;
+    }
+
+    public int getFailed() {
+        return results.size() - getSucceeded();
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    @Override
+    public String toString() {
+        return "Выгружено на серверов: " + getSucceeded() + " из " + results.size() +
+                ", размер файла: " + fileSize + " байт, время: " + millis + " мс";
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.dto;
+
+public class RecordChange {
+    public enum Type {
+        ADD,
+        REMOVE_BY_DOMAIN,
+        REMOVE_BY_IP
+    }
+
+    private final Type type;
+    private final String domain;
+    private final String ip;
+
+    public RecordChange(Type type, String domain, String ip) {
+        this.type = type;
+        this.domain = domain;
+        this.ip = ip;
+    }
+
+    public static RecordChange add(String domain, String ip) {
+        return new RecordChange(Type.ADD, domain, ip);
+    }
+
+    public static RecordChange removeByDomain(String domain) {
+        return new RecordChange(Type.REMOVE_BY_DOMAIN, domain, null);
+    }
+
+    public static RecordChange removeByIp(String ip) {
+        return new RecordChange(Type.REMOVE_BY_IP, null, ip);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case ADD:
+                return "+ " + domain + " - " + ip;
+            case REMOVE_BY_DOMAIN:
+                return "- " + domain;
+            default:
+                return "- " + ip;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.services;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Компактный двоичный снимок данных для быстрого старта.
+// JSON остается форматом обмена с сервером, снимок - локальный ускоритель.
+//
+// Формат (big-endian):
+//   int    MAGIC, int VERSION, int число записей
+//   записи в исходном порядке: int длина + UTF-8 домена, int IPv4
+//   int    размер индекса IP
+//   int[]  ключи индекса IP, уже отсортированные
+//   int[]  номера записей для каждого ключа
+// Загрузка читает файл через отображение в память и не разбирает текст:
+// индекс IP копируется целиком, без сортировки.
+// Снимок другой версии не читается, данные загружаются из JSON.
+final class BinarySnapshot {
+    private static final int MAGIC = 0x44495053;
+    private static final int VERSION = 2;
+
+    private BinarySnapshot() {
+    }
+
+    static void write(RecordTable records, Ipv4Index ipIndex, Path file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(records.size());
+            // Номер записи в снимке для каждой позиции таблицы
+            int[] ordinals = new int[records.end()];
+            int ordinal = 0;
+            for (int position = 0; position < records.end(); position++) {
+                String domain = records.domain(position);
+                if (domain != null) {
+                    ordinals[position] = ordinal++;
+                    writeString(output, domain);
+                    output.writeInt(records.ip(position));
+                }
+            }
+
+            Ipv4Index merged = ipIndex.merged();
+            output.writeInt(merged.size());
+            for (int i = 0; i < merged.size(); i++) {
+                output.writeInt(merged.keyAt(i));
+            }
+            for (int i = 0; i < merged.size(); i++) {
+                output.writeInt(ordinals[records.find(merged.domainAt(i))]);
+            }
+        }
+    }
+
+    static Loaded read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Файл " + file + " не является снимком данных");
+            }
+
+            int recordCount = buffer.getInt();
+            RecordTable records = new RecordTable(recordCount);
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < recordCount; i++) {
+                String domain = readString(buffer, bytes);
+                records.add(domain, buffer.getInt());
+            }
+
+            int indexSize = buffer.getInt();
+            int[] keys = new int[Math.max(indexSize, 16)];
+            buffer.asIntBuffer().get(keys, 0, indexSize);
+            buffer.position(buffer.position() + indexSize * 4);
+
+            // Позиции новой таблицы совпадают с номерами записей
+            String[] domains = new String[keys.length];
+            for (int i = 0; i < indexSize; i++) {
+                int ordinal = buffer.getInt();
+                if (ordinal < 0 || ordinal >= recordCount) {
+                    throw new IOException("Поврежденный снимок данных " + file + ": номер записи " + ordinal);
+                }
+                domains[i] = records.domain(ordinal);
+            }
+            return new Loaded(records, new Ipv4Index(keys, domains, indexSize));
+        } catch (RuntimeException e) {
+            // Обрезанный или поврежденный файл
+            throw new IOException("Поврежденный снимок данных " + file + ": " + e, e);
+        }
+    }
+
+    static final class Loaded {
+        final RecordTable records;
+        final Ipv4Index ipIndex;
+
+        Loaded(RecordTable records, Ipv4Index ipIndex) {
+            this.records = records;
+            this.ipIndex = ipIndex;
+        }
+    }
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer, byte[] bytes) {
+        int length = buffer.getInt();
+        byte[] target = length <= bytes.length ? bytes : new byte[length];
+        buffer.get(target, 0, length);
+        return new String(target, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,277 @@
+package org.example.services;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
+import org.example.dto.RecordChange;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Журнал изменений рядом с основным файлом (<файл>.log).
+// Каждое изменение дописывается в конец журнала через SFTP APPEND,
+// поэтому правка одной записи не требует выгрузки всего файла.
+// При превышении порога по числу записей или возрасту журнал
+// сворачивается в файл, см. compact.
+//
+// Формат строки: тип и поля через табуляцию, спецсимволы экранированы
+//   A<TAB>домен<TAB>ip | D<TAB>домен | I<TAB>ip
+public class ChangeJournal {
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_MAX_AGE_MINUTES = 60;
+    // Возраст блокировки, после которого сворачивание считается прерванным
+    public static final long STALE_COMPACT_LOCK_MINUTES = 10;
+    // То же для дозаписи; дозапись короткая, поэтому и ждать ее недолго
+    public static final long STALE_APPEND_LOCK_SECONDS = 60;
+    public static final long APPEND_LOCK_TIMEOUT_SECONDS = 30;
+
+    private final SftpService sftpService;
+    private final String snapshotPath;
+    private final String logPath;
+    // Журнал, который сейчас сворачивается (или сворачивание которого прервалось)
+    private final String compactingPath;
+    // Сворачивает журнал только один клиент
+    private final RemoteLock compactLock;
+    // Дописывает в журнал или откладывает его для сворачивания только один клиент
+    private final RemoteLock appendLock;
+    private final int maxEntries;
+    private final long maxAgeMillis;
+    // Уровень сжатия полного файла, если он .gz
+    private final int compressionLevel;
+
+    private int entryCount;
+    private long firstEntryTime;
+
+    public ChangeJournal(SftpService sftpService, String snapshotPath, int maxEntries, long maxAgeMinutes) {
+        this(sftpService, snapshotPath, maxEntries, maxAgeMinutes, GzipCodec.DEFAULT_LEVEL);
+    }
+
+    public ChangeJournal(SftpService sftpService, String snapshotPath, int maxEntries, long maxAgeMinutes,
+                         int compressionLevel) {
+        this.sftpService = sftpService;
+        this.snapshotPath = snapshotPath;
+        this.logPath = logPath(snapshotPath);
+        this.compactingPath = logPath + ".compacting";
+        this.compactLock = new RemoteLock(sftpService, logPath + ".compact.lock",
+                TimeUnit.MINUTES.toSeconds(STALE_COMPACT_LOCK_MINUTES));
+        this.appendLock = new RemoteLock(sftpService, logPath + ".append.lock", STALE_APPEND_LOCK_SECONDS);
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = TimeUnit.MINUTES.toMillis(maxAgeMinutes);
+        this.compressionLevel = compressionLevel;
+    }
+
+    public static String logPath(String snapshotPath) {
+        return snapshotPath + ".log";
+    }
+
+    // Применяет журнал поверх уже загруженного файла: сначала журнал,
+    // сворачивание которого не завершено, затем текущий.
+    // Возвращает число строк, которые не удалось применить.
+    public int replay(DomainIpService domainIpService) throws SftpException, IOException {
+        List<RecordChange> changes = new ArrayList<>();
+        int failed = readChanges(compactingPath, changes) + readChanges(logPath, changes);
+        entryCount = changes.size() + failed;
+
+        // Все изменения применяются за одну публикацию. Ошибочные пропускаются:
+        // изменение уже учтено в файле (например, после прерванного сворачивания)
+        int applied = domainIpService.applyChanges(changes, (index, e) -> { });
+        failed += changes.size() - applied;
+
+        if (entryCount > 0) {
+            firstEntryTime = System.currentTimeMillis();
+        }
+        return failed;
+    }
+
+    // Дописывает изменения из журнала path в changes; возвращает число нераспознанных строк
+    private int readChanges(String path, List<RecordChange> changes) throws SftpException, IOException {
+        if (!sftpService.exists(path)) {
+            return 0;
+        }
+
+        int failed = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(sftpService.openDownloadStream(path), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    changes.add(decode(line));
+                } catch (IOException e) {
+                    failed++;
+                }
+            }
+        }
+        return failed;
+    }
+
+    public void append(List<RecordChange> changes) throws SftpException, IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        // JSch дописывает по смещению, равному размеру файла на момент открытия,
+        // поэтому одновременные дозаписи разных клиентов затирали бы друг друга
+        if (!appendLock.acquire(TimeUnit.SECONDS.toMillis(APPEND_LOCK_TIMEOUT_SECONDS))) {
+            throw new IOException("Журнал " + logPath + " занят другим клиентом");
+        }
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(sftpService.openAppendStream(logPath), StandardCharsets.UTF_8))) {
+            for (RecordChange change : changes) {
+                writer.write(encode(change));
+                writer.write('\n');
+            }
+        } finally {
+            appendLock.release();
+        }
+
+        if (entryCount == 0) {
+            firstEntryTime = System.currentTimeMillis();
+        }
+        entryCount += changes.size();
+    }
+
+    public boolean needsCompaction() {
+        if (entryCount == 0) {
+            return false;
+        }
+        return entryCount >= maxEntries || System.currentTimeMillis() - firstEntryTime >= maxAgeMillis;
+    }
+
+    // Сворачивание не использует данные в памяти: в журнале могут быть
+    // изменения других клиентов, дописанные после нашей загрузки.
+    // 0. Клиент берет блокировку сворачивания; пока она занята, журнал
+    //    сворачивает другой клиент, и compact возвращает false.
+    // 1. Журнал переименовывается в <файл>.log.compacting под блокировкой записи,
+    //    чтобы ни одна дозапись не попала в уже прочитанный файл. Дальнейшие
+    //    записи, в том числе чужие, попадают в новый журнал и не теряются.
+    // 2. Файл скачивается заново, к нему применяется отложенный журнал.
+    // 3. Результат пишется под временным именем и переименовывается на место файла,
+    //    поэтому обрыв связи не оставляет на сервере недописанный файл. Если
+    //    блокировку успели снять как зависшую, файл не заменяется: это сделает
+    //    ее новый владелец. Между проверкой и переименованием остается окно
+    //    в один запрос к серверу.
+    // 4. Отложенный журнал удаляется, блокировка снимается.
+    // Если сворачивание прервалось, replay применяет и отложенный журнал, а следующее
+    // сворачивание продолжает с него; строки, уже учтенные в файле, пропускаются.
+    // Возвращает false, если журнал занят другим клиентом
+    public boolean compact() throws SftpException, IOException {
+        if (!compactLock.tryAcquire()) {
+            return false;
+        }
+        try {
+            // После прерванного сворачивания сначала сворачивается отложенный журнал,
+            // затем вторым проходом текущий
+            boolean resumed;
+            do {
+                resumed = sftpService.exists(compactingPath);
+                if (!resumed) {
+                    if (!sftpService.exists(logPath)) {
+                        break;
+                    }
+                    if (!setAsideLog()) {
+                        return false;
+                    }
+                }
+                foldCompactingLog();
+            } while (resumed);
+            entryCount = 0;
+            return true;
+        } finally {
+            compactLock.release();
+        }
+    }
+
+    private void foldCompactingLog() throws SftpException, IOException {
+        DomainIpService compacted = new DomainIpService();
+        try (InputStream inputStream = sftpService.openDownloadStream(snapshotPath)) {
+            compacted.loadData(inputStream);
+        }
+        List<RecordChange> changes = new ArrayList<>();
+        readChanges(compactingPath, changes);
+        compacted.applyChanges(changes, (index, e) -> { });
+
+        boolean replaced = sftpService.replaceFile(snapshotPath, outputStream -> {
+            try (OutputStream encoded = GzipCodec.encode(outputStream, snapshotPath, compressionLevel)) {
+                compacted.writeData(encoded);
+            }
+        }, compactLock::isHeld);
+        if (!replaced) {
+            throw new IOException("Блокировка " + compactLock.getPath() + " снята другим клиентом");
+        }
+        sftpService.deleteFile(compactingPath);
+    }
+
+    // Возвращает false, если журнал занят другим клиентом
+    private boolean setAsideLog() throws SftpException, IOException {
+        if (!appendLock.acquire(TimeUnit.SECONDS.toMillis(APPEND_LOCK_TIMEOUT_SECONDS))) {
+            return false;
+        }
+        try {
+            if (!compactLock.isHeld()) {
+                throw new IOException("Блокировка " + compactLock.getPath() + " снята другим клиентом");
+            }
+            sftpService.rename(logPath, compactingPath);
+            return true;
+        } finally {
+            appendLock.release();
+        }
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    private static String encode(RecordChange change) {
+        switch (change.getType()) {
+            case ADD:
+                return "A\t" + escape(change.getDomain()) + "\t" + escape(change.getIp());
+            case REMOVE_BY_DOMAIN:
+                return "D\t" + escape(change.getDomain());
+            default:
+                return "I\t" + escape(change.getIp());
+        }
+    }
+
+    private static RecordChange decode(String line) throws IOException {
+        String[] fields = line.split("\t", -1);
+        if (fields[0].equals("A") && fields.length == 3) {
+            return RecordChange.add(unescape(fields[1]), unescape(fields[2]));
+        }
+        if (fields[0].equals("D") && fields.length == 2) {
+            return RecordChange.removeByDomain(unescape(fields[1]));
+        }
+        if (fields[0].equals("I") && fields.length == 2) {
+            return RecordChange.removeByIp(unescape(fields[1]));
+        }
+        throw new IOException("Некорректная строка журнала: " + line);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("\t", "\\t")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                result.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,127 @@
+package org.example.services;
+
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import org.example.dto.RecordChange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+// Отправляет накопленные изменения на сервер: дописывает их в журнал,
+// если он включен, иначе перезаписывает файл целиком.
+//
+// Перезапись файла - сравнение с обменом: данные пишутся во временный файл,
+// затем размер и время изменения файла на сервере сверяются с версией,
+// на которой основаны данные, и временный файл переименовывается на место
+// основного. Если файл успел изменить кто-то другой, новая версия скачивается,
+// поверх нее заново применяются наши изменения, и попытка повторяется.
+// SFTP не умеет переименовывать по условию, поэтому между проверкой
+// и переименованием остается окно в один запрос к серверу.
+public class ChangePublisher {
+    public static final int MAX_UPLOAD_ATTEMPTS = 5;
+
+    private final SftpService sftpService;
+    private final DomainIpService domainIpService;
+    private final String remoteFilePath;
+    private final ChangeJournal journal;
+    // Уровень сжатия файла, если он .gz
+    private final int compressionLevel;
+
+    // Версия файла на сервере, на которой основаны данные в памяти; null - не проверять
+    private SftpATTRS remoteAttrs;
+    // Число успешных выгрузок; читается без блокировки, см. getPublishCount
+    private volatile long publishCount;
+
+    public ChangePublisher(SftpService sftpService, DomainIpService domainIpService,
+                           String remoteFilePath, ChangeJournal journal) {
+        this(sftpService, domainIpService, remoteFilePath, journal, GzipCodec.DEFAULT_LEVEL);
+    }
+
+    public ChangePublisher(SftpService sftpService, DomainIpService domainIpService,
+                           String remoteFilePath, ChangeJournal journal, int compressionLevel) {
+        this.sftpService = sftpService;
+        this.domainIpService = domainIpService;
+        this.remoteFilePath = remoteFilePath;
+        this.journal = journal;
+        this.compressionLevel = compressionLevel;
+    }
+
+    public synchronized void setRemoteAttributes(SftpATTRS remoteAttrs) {
+        this.remoteAttrs = remoteAttrs;
+    }
+
+    // Позволяет понять, была ли выгрузка за время фоновой загрузки с сервера
+    public long getPublishCount() {
+        return publishCount;
+    }
+
+    public synchronized void publish(List<RecordChange> changes) throws SftpException, IOException {
+        if (journal != null) {
+            journal.append(changes);
+            publishCount++;
+            compactJournal();
+            return;
+        }
+
+        for (int attempt = 1; attempt <= MAX_UPLOAD_ATTEMPTS; attempt++) {
+            if (tryReplace()) {
+                publishCount++;
+                return;
+            }
+            System.out.println("Файл на сервере изменен другим пользователем, изменения объединяются с новой версией.");
+            rebase(changes);
+        }
+        throw new IOException("Не удалось сохранить изменения: файл на сервере меняется слишком часто " +
+                "(попыток: " + MAX_UPLOAD_ATTEMPTS + ")");
+    }
+
+    // Изменения уже в журнале, поэтому ошибка сворачивания не отменяет выгрузку:
+    // иначе они дописались бы в журнал повторно. Журнал свернется при следующей
+    private void compactJournal() {
+        if (!journal.needsCompaction()) {
+            return;
+        }
+        try {
+            journal.compact();
+        } catch (SftpException | IOException e) {
+            System.err.println("Не удалось свернуть журнал изменений: " + e.getMessage());
+        }
+    }
+
+    // Возвращает false, если файл на сервере изменился с момента загрузки
+    private boolean tryReplace() throws SftpException, IOException {
+        // Сжатие определяется по имени основного файла, а не временного
+        boolean replaced = sftpService.replaceFile(remoteFilePath, outputStream -> {
+            try (OutputStream encoded = GzipCodec.encode(outputStream, remoteFilePath, compressionLevel)) {
+                domainIpService.writeData(encoded);
+            }
+        }, () -> remoteAttrs == null || sameVersion(remoteAttrs, sftpService.stat(remoteFilePath)));
+        if (replaced) {
+            remoteAttrs = sftpService.stat(remoteFilePath);
+        }
+        return replaced;
+    }
+
+    // Новая версия с сервера плюс наши изменения. Изменения, которые
+    // больше не применимы (например, запись уже удалена), отбрасываются.
+    // Данные собираются в отдельном экземпляре и подменяют текущие одной
+    // операцией: в обычном режиме консоль читает их без блокировки
+    private void rebase(List<RecordChange> changes) throws SftpException, IOException {
+        SftpATTRS attrs = sftpService.stat(remoteFilePath);
+        DomainIpService fresh = new DomainIpService();
+        try (InputStream inputStream = sftpService.openDownloadStream(remoteFilePath)) {
+            fresh.loadData(inputStream);
+        }
+
+        fresh.applyChanges(changes, (index, e) ->
+                System.err.println("Изменение " + changes.get(index) + " отброшено: " + e.getMessage()));
+        domainIpService.replaceData(fresh);
+        remoteAttrs = attrs;
+    }
+
+    private static boolean sameVersion(SftpATTRS expected, SftpATTRS actual) {
+        return expected.getSize() == actual.getSize() && expected.getMTime() == actual.getMTime();
+    }
+}
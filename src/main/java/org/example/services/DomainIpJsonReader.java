@@ -0,0 +1,268 @@
+package org.example.services;
+
+import org.example.dto.DomainIpRecord;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// Потоковый разбор JSON-массива вида [{"domain": "...", "ip": "..."}, ...].
+// Читает вход блоками фиксированного размера и отдает записи по одной,
+// поэтому память не зависит от размера файла. Поля могут идти в любом
+// порядке, неизвестные поля пропускаются.
+public class DomainIpJsonReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long offset;
+
+    private final StringBuilder token = new StringBuilder();
+    private boolean started;
+    private boolean finished;
+
+    public DomainIpJsonReader(InputStream inputStream) {
+        this(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    public DomainIpJsonReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // Возвращает следующую запись или null, если массив закончился.
+    // Объекты без домена или IP пропускаются.
+    public DomainIpRecord readRecord() throws IOException {
+        while (true) {
+            if (finished) {
+                return null;
+            }
+            if (!started) {
+                started = true;
+                int c = nextNonWhitespace();
+                if (c == -1) {
+                    finished = true;
+                    return null;
+                }
+                expect(c, '[');
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    finished = true;
+                    return null;
+                }
+                if (c != -1) {
+                    pushBack();
+                }
+            } else {
+                int c = nextNonWhitespace();
+                if (c == ']') {
+                    finished = true;
+                    return null;
+                }
+                expect(c, ',');
+            }
+
+            DomainIpRecord record = readObject();
+            if (record.getDomain() != null && record.getIp() != null) {
+                return record;
+            }
+        }
+    }
+
+    private DomainIpRecord readObject() throws IOException {
+        expect(nextNonWhitespace(), '{');
+        DomainIpRecord record = new DomainIpRecord();
+
+        int c = nextNonWhitespace();
+        if (c == '}') {
+            return record;
+        }
+        if (c != -1) {
+            pushBack();
+        }
+
+        while (true) {
+            expect(nextNonWhitespace(), '"');
+            String name = readString();
+            expect(nextNonWhitespace(), ':');
+
+            if ("domain".equals(name) || "ip".equals(name)) {
+                // null, число и т.п. считаются отсутствующим полем: объект пропускается
+                String value = null;
+                c = nextNonWhitespace();
+                if (c == '"') {
+                    value = readString();
+                } else {
+                    if (c != -1) {
+                        pushBack();
+                    }
+                    skipValue();
+                }
+                if ("domain".equals(name)) {
+                    record.setDomain(value);
+                } else {
+                    record.setIp(value);
+                }
+            } else {
+                skipValue();
+            }
+
+            c = nextNonWhitespace();
+            if (c == '}') {
+                return record;
+            }
+            expect(c, ',');
+        }
+    }
+
+    // Открывающая кавычка уже прочитана
+    private String readString() throws IOException {
+        token.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw syntaxError("незакрытая строка");
+            }
+            if (c == '"') {
+                return token.toString();
+            }
+            if (c != '\\') {
+                token.append((char) c);
+                continue;
+            }
+
+            c = read();
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    token.append((char) c);
+                    break;
+                case 'b':
+                    token.append('\b');
+                    break;
+                case 'f':
+                    token.append('\f');
+                    break;
+                case 'n':
+                    token.append('\n');
+                    break;
+                case 'r':
+                    token.append('\r');
+                    break;
+                case 't':
+                    token.append('\t');
+                    break;
+                case 'u':
+                    token.append(readUnicodeEscape());
+                    break;
+                default:
+                    throw syntaxError("неизвестная escape-последовательность");
+            }
+        }
+    }
+
+    private char readUnicodeEscape() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) {
+                throw syntaxError("некорректная \\u-последовательность");
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    private void skipValue() throws IOException {
+        int c = nextNonWhitespace();
+        if (c == '"') {
+            skipString();
+            return;
+        }
+        if (c != '{' && c != '[') {
+            // Число, true, false или null
+            while (c != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+                c = read();
+            }
+            if (c != -1) {
+                pushBack();
+            }
+            return;
+        }
+
+        int depth = 1;
+        while (depth > 0) {
+            c = read();
+            if (c == -1) {
+                throw syntaxError("неожиданный конец файла");
+            } else if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw syntaxError("незакрытая строка");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                read();
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            offset += limit;
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    // Возврат последнего прочитанного символа; всегда остается в текущем блоке.
+    // После конца входа (-1) вызывать нельзя
+    private void pushBack() {
+        position--;
+    }
+
+    private void expect(int actual, char expected) throws IOException {
+        if (actual == -1) {
+            throw syntaxError("неожиданный конец файла");
+        }
+        if (actual != expected) {
+            throw syntaxError("ожидался символ '" + expected + "'");
+        }
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("Ошибка разбора JSON в позиции " + (offset + position) + ": " + message);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
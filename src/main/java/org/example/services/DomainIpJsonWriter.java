@@ -0,0 +1,90 @@
+package org.example.services;
+
+import org.example.dto.DomainIpRecord;
+
+import java.io.*;
+
+// Потоковая запись записей в JSON без построения документа в памяти.
+// Экранирование выполняется за один проход прямо в Writer.
+public class DomainIpJsonWriter implements Flushable {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Writer writer;
+
+    public DomainIpJsonWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public void writeAll(Iterable<DomainIpRecord> records) throws IOException {
+        boolean first = true;
+        writer.write('[');
+        for (DomainIpRecord record : records) {
+            writer.write(first ? "\n" : ",\n");
+            first = false;
+            writeRecord(record);
+        }
+        writer.write(first ? "]" : "\n]");
+    }
+
+    private void writeRecord(DomainIpRecord record) throws IOException {
+        writer.write("   {\n");
+        writer.write("       \"domain\": \"");
+        writeEscaped(record.getDomain());
+        writer.write("\",\n");
+        writer.write("       \"ip\": \"");
+        writeEscaped(record.getIp());
+        writer.write("\"\n");
+        writer.write("   }");
+    }
+
+    private void writeEscaped(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        // Неизменные участки строки пишутся одним вызовом
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+
+            writer.write(value, start, i - start);
+            start = i + 1;
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\b':
+                    writer.write("\\b");
+                    break;
+                case '\f':
+                    writer.write("\\f");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    writer.write("\\u00");
+                    writer.write(HEX_DIGITS[c >> 4]);
+                    writer.write(HEX_DIGITS[c & 0xF]);
+            }
+        }
+        writer.write(value, start, value.length() - start);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+}
@@ -1,147 +1,717 @@
 package org.example.services;
 
 import org.example.Validator;
+import org.example.dto.ConflictPolicy;
 import org.example.dto.DomainIpRecord;
+import org.example.dto.ImportReport;
+import org.example.dto.RecordChange;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+// Таблица доменов и IP-адресов. Все данные лежат в одном объекте State.
+// В обычном режиме изменения вносятся в него на месте. В потокобезопасном
+// режиме (concurrent) State после публикации не меняется: запись копирует
+// его, вносит изменения и публикует новую версию через volatile-ссылку.
+// Чтение в этом режиме не блокируется и всегда видит согласованный снимок,
+// записи выполняются по очереди.
 public class DomainIpService {
-    private List<DomainIpRecord> records;
-    private static final Pattern DOMAIN_IP_OBJECT_PATTERN = Pattern.compile(
-            "\\{\\s*\"domain\"\\s*:\\s*\"([^\"]+)\"\\s*,\\s*\"ip\"\\s*:\\s*\"([^\"]+)\"\\s*\\}"
-    );
+    // Результат сверки импортируемой записи с существующими
+    private static final byte NEW = 1;
+    private static final byte SAME = 2;
+    private static final byte CONFLICT = 3;
 
-    public DomainIpService() {
-        this.records = new ArrayList<>();
+    private static final LatencyHistogram PARSE = Metrics.histogram(Metrics.PARSE);
+    private static final LongAdder PARSE_RECORDS = Metrics.counter(Metrics.PARSE_RECORDS);
+    private static final LatencyHistogram LOOKUP_DOMAIN = Metrics.histogram(Metrics.LOOKUP_DOMAIN);
+    private static final LatencyHistogram LOOKUP_IP = Metrics.histogram(Metrics.LOOKUP_IP);
+    private static final LongAdder LOOKUPS_DOMAIN = Metrics.counter(Metrics.LOOKUPS_DOMAIN);
+    private static final LongAdder LOOKUPS_IP = Metrics.counter(Metrics.LOOKUPS_IP);
+    private static final LatencyHistogram MUTATION = Metrics.histogram(Metrics.MUTATION);
+
+    private final boolean concurrent;
+    private volatile State state;
+
+    private static final class State {
+        // Записи в порядке добавления (порядок файла) и поиск по домену
+        // без учета регистра за O(1); IP хранятся как int, см. RecordTable
+        final RecordTable records;
+        // Обратный индекс: IPv4 в виде int -> домен, бинарный поиск
+        final Ipv4Index ipIndex;
+        // Увеличивается при каждом изменении данных
+        long version;
+        // Записи, отсортированные по домену; строится при первом обращении
+        // и сбрасывается при изменении данных
+        volatile SortedView sortedView;
+        // Индекс по зонам строится при первом запросе по зоне. Дальше его
+        // обновляют add и remove; копия State и новые данные начинают без него
+        volatile DomainTrie domainTrie;
+
+        State(RecordTable records, Ipv4Index ipIndex) {
+            this.records = records;
+            this.ipIndex = ipIndex;
+        }
+
+        State copy() {
+            return new State(records.copy(), ipIndex.copy());
+        }
+
+        void add(String domain, String ip) {
+            // Валидация домена и IP
+            if (domain == null || domain.trim().isEmpty()) {
+                throw new IllegalArgumentException("Домен не может быть пустым");
+            }
+            int address = parseIp(ip);
+
+            // Проверка уникальности
+            if (records.find(domain) >= 0) {
+                throw new IllegalArgumentException("Домен '" + domain + "' уже существует");
+            }
+            if (ipIndex.get(address) != null) {
+                throw new IllegalArgumentException("IP-адрес '" + ip + "' уже существует");
+            }
+
+            records.add(domain, address);
+            ipIndex.put(address, domain);
+            if (domainTrie != null) {
+                domainTrie.add(domain);
+            }
+        }
+
+        void removeByDomain(String domain) {
+            int position = domain != null ? records.find(domain) : -1;
+            if (position < 0) {
+                throw new IllegalArgumentException("Домен '" + domain + "' не найден");
+            }
+            remove(position);
+        }
+
+        void removeByIp(String ip) {
+            String domain = ipIndex.get(parseIp(ip));
+            if (domain == null) {
+                throw new IllegalArgumentException("IP-адрес '" + ip + "' не найден");
+            }
+            remove(records.find(domain));
+        }
+
+        void apply(RecordChange change) {
+            switch (change.getType()) {
+                case ADD:
+                    add(change.getDomain(), change.getIp());
+                    break;
+                case REMOVE_BY_DOMAIN:
+                    removeByDomain(change.getDomain());
+                    break;
+                case REMOVE_BY_IP:
+                    removeByIp(change.getIp());
+                    break;
+            }
+        }
+
+        private void remove(int position) {
+            String domain = records.domain(position);
+            ipIndex.remove(records.ip(position));
+            records.remove(position);
+            if (domainTrie != null) {
+                domainTrie.remove(domain);
+            }
+        }
+
+        // Запись с доменом из индекса; домен берется из самой таблицы
+        DomainIpRecord record(String domain) {
+            return records.record(records.find(domain));
+        }
+
+        SortedView sortedView() {
+            SortedView sorted = sortedView;
+            if (sorted == null) {
+                // Параллельные читатели могут построить массивы дважды, результат одинаков
+                sorted = new SortedView(records);
+                sortedView = sorted;
+            }
+            return sorted;
+        }
+
+        DomainTrie domainTrie() {
+            DomainTrie trie = domainTrie;
+            if (trie == null) {
+                // Опубликованный State не меняется, поэтому параллельные читатели
+                // в худшем случае построят одинаковое дерево дважды
+                trie = DomainTrie.build(records);
+                domainTrie = trie;
+            }
+            return trie;
+        }
     }
 
-    public void loadDataFromFile(String filePath) throws IOException {
-        StringBuilder content = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line);
+    // Домены по возрастанию и их IP в тех же позициях; записи создаются при обращении.
+    // Массивы - собственная копия, поэтому список остается верным и после изменения данных
+    private static final class SortedView extends AbstractList<DomainIpRecord> implements RandomAccess {
+        final String[] domains;
+        final int[] ips;
+
+        SortedView(RecordTable records) {
+            domains = new String[records.size()];
+            int count = 0;
+            for (int position = 0; position < records.end(); position++) {
+                if (records.domain(position) != null) {
+                    domains[count++] = records.domain(position);
+                }
+            }
+            Arrays.sort(domains);
+            ips = new int[domains.length];
+            for (int i = 0; i < domains.length; i++) {
+                ips[i] = records.ip(records.find(domains[i]));
             }
         }
 
-        this.records = new ArrayList<>();
+        @Override
+        public DomainIpRecord get(int index) {
+            return new DomainIpRecord(domains[index], Validator.formatIPv4(ips[index]));
+        }
 
-        // Простой парсинг с помощью регулярных выражений
-        String json = content.toString();
-        Matcher matcher = DOMAIN_IP_OBJECT_PATTERN.matcher(json);
+        @Override
+        public int size() {
+            return domains.length;
+        }
+    }
 
-        while (matcher.find()) {
-            DomainIpRecord record = new DomainIpRecord();
-            record.setDomain(matcher.group(1));
-            record.setIp(matcher.group(2));
-            records.add(record);
+    public DomainIpService() {
+        this(false);
+    }
+
+    public DomainIpService(boolean concurrent) {
+        this.concurrent = concurrent;
+        this.state = new State(new RecordTable(), new Ipv4Index());
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    public int loadDataFromFile(String filePath) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(Paths.get(filePath))) {
+            return loadData(inputStream);
         }
     }
 
-    public String convertDataToJson() {
-        if (records == null || records.isEmpty()) {
-            return "[]";
+    // Новые данные собираются без блокировки и заменяют текущие целиком.
+    // Сжатый gzip поток распаковывается по ходу разбора, см. GzipCodec.
+    // Скорость разбора в метриках включает ожидание данных из потока.
+    // Записи с некорректным IP или пустым доменом и записи с уже встречавшимся
+    // доменом или IP (при поиске всегда побеждала первая) пропускаются
+    // и перечисляются в stderr; возвращается их число
+    public int loadData(InputStream inputStream) throws IOException {
+        long startTime = System.nanoTime();
+        RecordTable loaded = new RecordTable();
+        ImportIssues skipped = new ImportIssues();
+
+        long parsed = 0;
+        try (InputStream decoded = GzipCodec.decode(inputStream)) {
+            DomainIpJsonReader reader = new DomainIpJsonReader(decoded);
+            DomainIpRecord record;
+            while ((record = reader.readRecord()) != null) {
+                parsed++;
+                long address = Validator.parseIPv4(record.getIp());
+                if (address < 0 || record.getDomain().trim().isEmpty()) {
+                    skipped.conflict("Некорректная запись: " + record);
+                    continue;
+                }
+                int first = loaded.find(record.getDomain());
+                if (first >= 0) {
+                    skipped.conflict("Повторяющийся домен: " + record + " (уже есть " + loaded.record(first) + ")");
+                    continue;
+                }
+                loaded.add(record.getDomain(), (int) address);
+            }
         }
 
-        StringBuilder json = new StringBuilder();
-        json.append("[\n");
+        List<Integer> duplicateIps = new ArrayList<>();
+        Ipv4Index loadedIpIndex = Ipv4Index.build(loaded, duplicateIps::add);
+        for (int position : duplicateIps) {
+            skipped.conflict("Повторяющийся IP-адрес: " + loaded.record(position) + " (уже есть " +
+                    loadedIpIndex.get(loaded.ip(position)) + ")");
+            loaded.remove(position);
+        }
+        loaded.trim();
 
-        for (int i = 0; i < records.size(); i++) {
-            DomainIpRecord record = records.get(i);
-            json.append("   {\n");
-            json.append("       \"domain\": \"").append(escapeJson(record.getDomain())).append("\",\n");
-            json.append("       \"ip\": \"").append(escapeJson(record.getIp())).append("\"\n");
-            json.append("   }");
+        replaceState(new State(loaded, loadedIpIndex));
+        PARSE.recordSince(startTime);
+        PARSE_RECORDS.add(parsed);
 
-            if (i < records.size() - 1) {
-                json.append(",");
+        if (skipped.conflicts > 0) {
+            System.err.println("При загрузке пропущено записей: " + skipped.conflicts);
+            for (String message : skipped.messages) {
+                System.err.println("  " + message);
             }
-            json.append("\n");
         }
+        return skipped.conflicts;
+    }
 
-        json.append("]");
-        return json.toString();
+    // Двоичный снимок для быстрой повторной загрузки, см. BinarySnapshot
+    public void saveSnapshot(Path file) throws IOException {
+        State current = state;
+        BinarySnapshot.write(current.records, current.ipIndex, file);
     }
 
-    private String escapeJson(String value) {
-        if (value == null) {
-            return "";
+    public void loadSnapshot(Path file) throws IOException {
+        BinarySnapshot.Loaded loaded = BinarySnapshot.read(file);
+        replaceState(new State(loaded.records, loaded.ipIndex));
+    }
+
+    // Подменяет данные содержимым другого экземпляра, например заново
+    // загруженного с сервера; source после этого использовать нельзя
+    public void replaceData(DomainIpService source) {
+        replaceState(source.state);
+    }
+
+    public String convertDataToJson() {
+        StringWriter json = new StringWriter();
+        try {
+            writeJson(json);
+        } catch (IOException e) {
+            // StringWriter не бросает IOException
+            throw new UncheckedIOException(e);
         }
-        return value.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\b", "\\b")
-                .replace("\f", "\\f")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+        return json.toString();
+    }
+
+    public void writeJson(Writer writer) throws IOException {
+        DomainIpJsonWriter jsonWriter = new DomainIpJsonWriter(writer);
+        jsonWriter.writeAll(state.records.records());
+        jsonWriter.flush();
+    }
+
+    // Пишет JSON в поток в UTF-8; сам поток не закрывается
+    public void writeData(OutputStream outputStream) throws IOException {
+        writeJson(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
     }
 
+    // Все записи по возрастанию домена. Список только для чтения и не копируется:
+    // повторные вызовы без изменений данных возвращают тот же отсортированный список,
+    // объекты записей создаются при обращении к элементам
     public List<DomainIpRecord> getAllRecords() {
-        List<DomainIpRecord> sortedRecords = new ArrayList<>(records);
-        sortedRecords.sort(Comparator.comparing(DomainIpRecord::getDomain));
-        return sortedRecords;
+        return state.sortedView();
     }
 
+    // Страница отсортированных записей
+    public List<DomainIpRecord> getRecords(int offset, int limit) {
+        SortedView sorted = state.sortedView();
+        int from = Math.min(Math.max(offset, 0), sorted.size());
+        int to = (int) Math.min((long) from + Math.max(limit, 0), sorted.size());
+        return sorted.subList(from, to);
+    }
+
+    // Страница записей, домен которых начинается с prefix (с учетом регистра,
+    // как и порядок сортировки). Диапазон находится бинарным поиском
+    public List<DomainIpRecord> getRecordsByPrefix(String prefix, int offset, int limit) {
+        SortedView sorted = state.sortedView();
+        String[] domains = sorted.domains;
+        int low = 0;
+        int high = domains.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (domains[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int from = (int) Math.min((long) low + Math.max(offset, 0), domains.length);
+        int to = from;
+        while (to < domains.length && to - from < limit && domains[to].startsWith(prefix)) {
+            to++;
+        }
+        return sorted.subList(from, to);
+    }
+
+    public long getVersion() {
+        return state.version;
+    }
+
+    public int getRecordCount() {
+        return state.records.size();
+    }
+
+    // Время поиска замеряется выборочно, см. Metrics.LOOKUP_SAMPLE
     public String findIpByDomain(String domain) {
-        return records.stream()
-                .filter(record -> record.getDomain().equalsIgnoreCase(domain))
-                .findFirst()
-                .map(DomainIpRecord::getIp)
-                .orElse(null);
+        LOOKUPS_DOMAIN.increment();
+        if (!Metrics.sampleLookup()) {
+            return lookupIp(domain);
+        }
+        long startTime = System.nanoTime();
+        String ip = lookupIp(domain);
+        LOOKUP_DOMAIN.recordSince(startTime);
+        return ip;
     }
 
     public String findDomainByIp(String ip) {
-        if (Validator.isNotValidIPv4(ip)) {
-            throw new IllegalArgumentException("Некорректный IPv4 адрес: " + ip);
+        LOOKUPS_IP.increment();
+        if (!Metrics.sampleLookup()) {
+            return state.ipIndex.get(parseIp(ip));
         }
+        long startTime = System.nanoTime();
+        String domain = state.ipIndex.get(parseIp(ip));
+        LOOKUP_IP.recordSince(startTime);
+        return domain;
+    }
 
-        return records.stream()
-                .filter(record -> record.getIp().equals(ip))
-                .findFirst()
-                .map(DomainIpRecord::getDomain)
-                .orElse(null);
+    private String lookupIp(String domain) {
+        if (domain == null) {
+            return null;
+        }
+        RecordTable records = state.records;
+        int position = records.find(domain);
+        return position >= 0 ? Validator.formatIPv4(records.ip(position)) : null;
     }
 
-    public void addRecord(String domain, String ip) throws Exception {
-        // Валидация IP
-        if (Validator.isNotValidIPv4(ip)) {
-            throw new IllegalArgumentException("Некорректный IPv4 адрес: " + ip);
+    // Записи с IP из подсети (например, 10.20.0.0/16) по возрастанию адреса.
+    // Диапазон находится бинарным поиском по IP-индексу, поэтому время
+    // пропорционально размеру результата. Поток читает снимок данных на момент
+    // вызова; в обычном режиме его нужно дочитать до следующего изменения.
+    public Stream<DomainIpRecord> findRecordsInSubnet(String cidr) {
+        int separator = cidr != null ? cidr.indexOf('/') : -1;
+        long address = separator > 0 ? Validator.parseIPv4(cidr.substring(0, separator)) : -1;
+        int prefixLength = separator > 0 ? parsePrefixLength(cidr.substring(separator + 1)) : -1;
+        if (address < 0 || prefixLength < 0) {
+            throw new IllegalArgumentException("Некорректная подсеть: " + cidr + " (ожидается адрес/длина префикса)");
         }
 
-        // Проверка уникальности
-        if (findIpByDomain(domain) != null) {
-            throw new IllegalArgumentException("Домен '" + domain + "' уже существует");
+        int mask = prefixLength == 0 ? 0 : -1 << (32 - prefixLength);
+        int network = (int) address & mask;
+        return findRecordsInRange(state, network, network | ~mask);
+    }
+
+    // Записи с IP от fromIp до toIp включительно по возрастанию адреса
+    public Stream<DomainIpRecord> findRecordsInRange(String fromIp, String toIp) {
+        int from = parseIp(fromIp);
+        int to = parseIp(toIp);
+        if (Integer.compareUnsigned(from, to) > 0) {
+            throw new IllegalArgumentException("Начало диапазона больше конца: " + fromIp + " - " + toIp);
         }
-        if (findDomainByIp(ip) != null) {
-            throw new IllegalArgumentException("IP-адрес '" + ip + "' уже существует");
+        return findRecordsInRange(state, from, to);
+    }
+
+    private static Stream<DomainIpRecord> findRecordsInRange(State current, int from, int to) {
+        return current.ipIndex.domainsInRange(from, to).map(current::record);
+    }
+
+    // Записи зоны: сам домен zone и все домены внутри него (corp.example.com
+    // вернет corp.example.com, a.corp.example.com, b.a.corp.example.com ...)
+    // в каноническом порядке DNS, см. DomainTrie. Регистр и завершающая
+    // точка не учитываются
+    public List<DomainIpRecord> findRecordsInZone(String zone) {
+        State current = state;
+        List<String> domains = new ArrayList<>();
+        current.domainTrie().collectZone(requireZone(zone), domains);
+        return toRecords(current, domains);
+    }
+
+    // Записи по шаблону, где "*" заменяет метку целиком: *.example.com - все
+    // домены внутри example.com (без него самого), www.*.example.com - ровно
+    // одна метка на месте "*". Шаблон без "*" ищет один домен
+    public List<DomainIpRecord> findRecordsMatching(String pattern) {
+        State current = state;
+        List<String> domains = new ArrayList<>();
+        current.domainTrie().collectMatching(requireZone(pattern), domains);
+        return toRecords(current, domains);
+    }
+
+    private static List<DomainIpRecord> toRecords(State current, List<String> domains) {
+        List<DomainIpRecord> result = new ArrayList<>(domains.size());
+        for (String domain : domains) {
+            result.add(current.record(domain));
         }
+        return result;
+    }
 
-        records.add(new DomainIpRecord(domain, ip));
+    // Число записей в зоне без обхода самих записей
+    public int countRecordsInZone(String zone) {
+        return state.domainTrie().count(requireZone(zone));
     }
 
-    public void removeRecordByDomain(String domain) throws Exception {
-        boolean removed = records.removeIf(record -> record.getDomain().equalsIgnoreCase(domain));
-        if (!removed) {
-            throw new IllegalArgumentException("Домен '" + domain + "' не найден");
+    // Число записей в каждой подзоне следующего уровня, например для
+    // example.com: corp.example.com -> 1200, www.example.com -> 1
+    public SortedMap<String, Integer> countRecordsBySubzone(String zone) {
+        return state.domainTrie().countSubzones(requireZone(zone));
+    }
+
+    private static String requireZone(String zone) {
+        if (zone == null) {
+            throw new IllegalArgumentException("Не указана зона");
+        }
+        return zone;
+    }
+
+    private static int parsePrefixLength(String value) {
+        if (value.isEmpty() || value.length() > 2) {
+            return -1;
+        }
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            length = length * 10 + (c - '0');
         }
+        return length <= 32 ? length : -1;
+    }
+
+    public void addRecord(String domain, String ip) throws Exception {
+        mutate(edited -> edited.add(domain, ip));
+    }
+
+    public void removeRecordByDomain(String domain) throws Exception {
+        mutate(edited -> edited.removeByDomain(domain));
     }
 
     public void removeRecordByIp(String ip) throws Exception {
-        if (Validator.isNotValidIPv4(ip)) {
-            throw new IllegalArgumentException("Некорректный IPv4 адрес: " + ip);
+        mutate(edited -> edited.removeByIp(ip));
+    }
+
+    public void applyChange(RecordChange change) throws Exception {
+        mutate(edited -> edited.apply(change));
+    }
+
+    private synchronized void mutate(Consumer<State> change) {
+        long startTime = System.nanoTime();
+        State edited = edit();
+        change.accept(edited);
+        commit(edited);
+        MUTATION.recordSince(startTime);
+    }
+
+    // Применяет пачку изменений за одну публикацию (одно копирование в режиме concurrent).
+    // Ошибочные изменения пропускаются и передаются в onError вместе с номером в списке.
+    // Возвращает число примененных изменений.
+    public synchronized int applyChanges(List<RecordChange> changes,
+                                         BiConsumer<Integer, IllegalArgumentException> onError) {
+        long startTime = System.nanoTime();
+        State edited = edit();
+        int applied = 0;
+        for (int i = 0; i < changes.size(); i++) {
+            try {
+                edited.apply(changes.get(i));
+                applied++;
+            } catch (IllegalArgumentException e) {
+                onError.accept(i, e);
+            }
+        }
+        if (applied > 0) {
+            commit(edited);
+        }
+        MUTATION.recordSince(startTime);
+        return applied;
+    }
+
+    // Массовый импорт записей из JSON в формате основного файла, в том числе сжатого gzip.
+    // Разбор идет без блокировки, слияние - как в importRecords(List, ...)
+    public ImportReport importRecords(InputStream inputStream, ConflictPolicy policy) throws IOException {
+        List<DomainIpRecord> incoming = new ArrayList<>();
+        try (InputStream decoded = GzipCodec.decode(inputStream)) {
+            DomainIpJsonReader reader = new DomainIpJsonReader(decoded);
+            DomainIpRecord record;
+            while ((record = reader.readRecord()) != null) {
+                incoming.add(record);
+            }
+        }
+        return importRecords(incoming, policy);
+    }
+
+    // Проверка записей идет параллельно, повторы и конфликты ищутся по хешам
+    // внутри пакета и среди существующих записей. Все изменения применяются
+    // одной публикацией, IP-индекс перестраивается один раз.
+    public synchronized ImportReport importRecords(List<DomainIpRecord> incoming, ConflictPolicy policy) {
+        int count = incoming.size();
+        String[] keys = new String[count];
+        int[] addresses = new int[count];
+        boolean[] valid = new boolean[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            DomainIpRecord record = incoming.get(i);
+            long address = Validator.parseIPv4(record.getIp());
+            String domain = record.getDomain();
+            valid[i] = address >= 0 && domain != null && !domain.trim().isEmpty();
+            keys[i] = valid[i] ? domainKey(domain) : null;
+            addresses[i] = (int) address;
+        });
+
+        ImportIssues issues = new ImportIssues();
+        int invalid = 0;
+        int duplicates = 0;
+
+        // Повторы внутри пакета: побеждает первое вхождение
+        boolean[] accepted = new boolean[count];
+        Map<String, Integer> batchDomains = new HashMap<>(count * 4 / 3 + 1);
+        Map<Integer, Integer> batchIps = new HashMap<>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; i++) {
+            if (!valid[i]) {
+                invalid++;
+                issues.add("Некорректная запись: " + incoming.get(i));
+                continue;
+            }
+            Integer sameDomain = batchDomains.get(keys[i]);
+            Integer sameIp = batchIps.get(addresses[i]);
+            if (sameDomain != null && sameDomain.equals(sameIp)) {
+                duplicates++;
+            } else if (sameDomain != null || sameIp != null) {
+                issues.conflict("Конфликт внутри импорта: " + incoming.get(i) + " и " +
+                        incoming.get(sameDomain != null ? sameDomain : sameIp));
+            } else {
+                batchDomains.put(keys[i], i);
+                batchIps.put(addresses[i], i);
+                accepted[i] = true;
+            }
+        }
+
+        // Сверка с существующими записями только читает данные, поэтому тоже параллельно
+        State current = state;
+        byte[] status = new byte[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            if (accepted[i]) {
+                status[i] = classify(current, keys[i], addresses[i]);
+            }
+        });
+        for (int i = 0; i < count; i++) {
+            if (status[i] == CONFLICT) {
+                int existing = current.records.find(keys[i]);
+                issues.conflict("Конфликт с существующей записью: " + incoming.get(i) + " и " +
+                        (existing >= 0 ? current.records.record(existing)
+                                : current.record(current.ipIndex.get(addresses[i]))));
+            }
         }
-        boolean removed = records.removeIf(record -> record.getIp().equals(ip));
-        if (!removed) {
-            throw new IllegalArgumentException("IP-адрес '" + ip + "' не найден");
+
+        if (policy == ConflictPolicy.REJECT && issues.conflicts > 0) {
+            return new ImportReport(count, 0, 0, 0, 0, invalid, duplicates, issues.conflicts, true,
+                    issues.messages, Collections.<RecordChange>emptyList());
+        }
+
+        State edited = edit();
+        List<RecordChange> changes = new ArrayList<>();
+        int added = 0;
+        int overwritten = 0;
+        int unchanged = 0;
+        int keptExisting = 0;
+        for (int i = 0; i < count; i++) {
+            if (status[i] == SAME) {
+                unchanged++;
+                continue;
+            }
+            if (status[i] == CONFLICT) {
+                if (policy != ConflictPolicy.OVERWRITE) {
+                    keptExisting++;
+                    continue;
+                }
+                // Заменяемые записи: с тем же доменом и с тем же IP (это могут быть две разные записи).
+                // Уже замененная запись из таблицы удалена и повторно не находится
+                replace(edited, edited.records.find(keys[i]), changes);
+                String ipOwner = current.ipIndex.get(addresses[i]);
+                if (ipOwner != null) {
+                    int owner = edited.records.find(ipOwner);
+                    if (owner >= 0 && edited.records.ip(owner) == addresses[i]) {
+                        replace(edited, owner, changes);
+                    }
+                }
+                overwritten++;
+            } else if (status[i] == NEW) {
+                added++;
+            } else {
+                continue;
+            }
+
+            String domain = incoming.get(i).getDomain();
+            edited.records.add(domain, addresses[i]);
+            changes.add(RecordChange.add(domain, Validator.formatIPv4(addresses[i])));
+        }
+
+        if (!changes.isEmpty()) {
+            // Повторов адресов после слияния нет
+            Ipv4Index rebuiltIpIndex = Ipv4Index.build(edited.records, position -> { });
+            commit(new State(edited.records, rebuiltIpIndex));
+        }
+        return new ImportReport(count, added, overwritten, unchanged, keptExisting, invalid, duplicates,
+                issues.conflicts, false, issues.messages, changes);
+    }
+
+    private static byte classify(State current, String key, int address) {
+        int byDomain = current.records.find(key);
+        String byIp = current.ipIndex.get(address);
+        if (byDomain < 0 && byIp == null) {
+            return NEW;
+        }
+        if (byDomain >= 0 && byIp != null && domainKey(byIp).equals(key)) {
+            return SAME;
+        }
+        return CONFLICT;
+    }
+
+    private static void replace(State edited, int position, List<RecordChange> changes) {
+        if (position < 0) {
+            return;
         }
+        changes.add(RecordChange.removeByDomain(edited.records.domain(position)));
+        edited.records.remove(position);
+    }
+
+    // Итоги импорта или загрузки: хранятся только первые сообщения, счетчики - полные
+    private static final class ImportIssues {
+        private static final int MAX_MESSAGES = 100;
+
+        final List<String> messages = new ArrayList<>();
+        int conflicts;
+
+        void add(String message) {
+            if (messages.size() < MAX_MESSAGES) {
+                messages.add(message);
+            }
+        }
+
+        void conflict(String message) {
+            conflicts++;
+            add(message);
+        }
+    }
+
+    // Копия текущих данных для потокобезопасного режима, иначе сами данные
+    private State edit() {
+        return concurrent ? state.copy() : state;
+    }
+
+    private void commit(State edited) {
+        edited.version = state.version + 1;
+        edited.sortedView = null;
+        state = edited;
+    }
+
+    private synchronized void replaceState(State loaded) {
+        commit(loaded);
+    }
+
+    private static int parseIp(String ip) {
+        long address = Validator.parseIPv4(ip);
+        if (address < 0) {
+            throw new IllegalArgumentException("Некорректный IPv4 адрес: " + ip);
+        }
+        return (int) address;
+    }
+
+    private static String domainKey(String domain) {
+        return RecordTable.domainKey(domain);
     }
 
     public void saveDataToFile(String filePath) throws IOException {
-        try (Writer writer = new FileWriter(filePath)) {
-            writer.write(convertDataToJson());
+        try (OutputStream outputStream = Files.newOutputStream(Paths.get(filePath))) {
+            writeData(outputStream);
         }
     }
 }
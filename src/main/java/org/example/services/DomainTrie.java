@@ -0,0 +1,280 @@
+package org.example.services;
+
+import java.util.*;
+
+// Индекс доменов по зонам: дерево по меткам домена справа налево
+// (com -> example -> corp -> ...). Поиск по зоне и подсчет записей
+// не затрагивают записи из других зон.
+// Домены приводятся к нижнему регистру так же, как ключи RecordTable.
+// Метки внутри узла упорядочены, поэтому обход выдает записи в каноническом
+// порядке DNS: зона, затем ее подзоны по возрастанию метки.
+//
+// Хранятся только строки доменов, записи с IP собирает DomainIpService.
+// Узел создается только для зоны, в которой есть другие домены; домен без
+// поддоменов хранится в таблице родителя самой строкой. Метки зон берутся
+// из общего пула (corp, internal, prod повторяются под многими зонами),
+// метки конечных доменов почти всегда уникальны и в пул не попадают.
+class DomainTrie {
+    private final Node root = new Node();
+    private final Map<String, String> zoneLabels = new HashMap<>();
+
+    private static final class Node {
+        // Метка -> Node или домен (String); null, пока подзон нет
+        TreeMap<String, Object> children;
+        // Домен, равный самой зоне
+        String domain;
+        // Записей в поддереве, включая собственную
+        int count;
+    }
+
+    static DomainTrie build(RecordTable records) {
+        DomainTrie trie = new DomainTrie();
+        for (int position = 0; position < records.end(); position++) {
+            String domain = records.domain(position);
+            if (domain != null) {
+                trie.add(domain);
+            }
+        }
+        return trie;
+    }
+
+    // Домен должен быть уникальным без учета регистра, как в RecordTable
+    void add(String domain) {
+        String key = RecordTable.domainKey(domain);
+        Node node = root;
+        node.count++;
+        if (key.isEmpty()) {
+            node.domain = domain;
+            return;
+        }
+        // Метки справа налево без промежуточного массива
+        int end = key.length();
+        while (true) {
+            int start = key.lastIndexOf('.', end - 1);
+            String label = key.substring(start + 1, end);
+            if (node.children == null) {
+                node.children = new TreeMap<>();
+            }
+            Object child = node.children.get(label);
+            if (start < 0) {
+                // Крайняя левая метка: сам домен
+                if (child instanceof Node) {
+                    ((Node) child).domain = domain;
+                    ((Node) child).count++;
+                } else {
+                    node.children.put(label, domain);
+                }
+                return;
+            }
+            node = zone(node, label, child);
+            node.count++;
+            end = start;
+        }
+    }
+
+    // Узел зоны; домен без поддоменов становится доменом нового узла
+    private Node zone(Node parent, String label, Object child) {
+        if (child instanceof Node) {
+            return (Node) child;
+        }
+        Node zone = new Node();
+        if (child != null) {
+            zone.domain = (String) child;
+            zone.count = 1;
+        }
+        parent.children.put(internZoneLabel(label), zone);
+        return zone;
+    }
+
+    // Опустевшие зоны удаляются; метки остаются в пуле до перестроения индекса
+    void remove(String domain) {
+        String[] path = split(RecordTable.domainKey(domain));
+        Node[] nodes = new Node[path.length];
+        Node node = root;
+        for (int i = 0; i < path.length - 1; i++) {
+            Object child = node.children != null ? node.children.get(path[i]) : null;
+            if (!(child instanceof Node)) {
+                return;
+            }
+            nodes[i] = node;
+            node = (Node) child;
+        }
+
+        if (path.length == 0) {
+            if (!domain.equals(root.domain)) {
+                return;
+            }
+            root.domain = null;
+            root.count--;
+            return;
+        }
+        String label = path[path.length - 1];
+        Object leaf = node.children != null ? node.children.get(label) : null;
+        if (domain.equals(leaf)) {
+            removeChild(node, label);
+        } else if (leaf instanceof Node && domain.equals(((Node) leaf).domain)) {
+            Node zone = (Node) leaf;
+            zone.domain = null;
+            if (--zone.count == 0) {
+                removeChild(node, label);
+            }
+        } else {
+            return;
+        }
+
+        // Счетчики на пути к корню; пустые зоны удаляются у родителя
+        for (int i = path.length - 1; i >= 0; i--) {
+            node.count--;
+            if (i > 0 && node.count == 0) {
+                removeChild(nodes[i - 1], path[i - 1]);
+            }
+            node = i > 0 ? nodes[i - 1] : null;
+        }
+    }
+
+    private static void removeChild(Node parent, String label) {
+        parent.children.remove(label);
+        if (parent.children.isEmpty()) {
+            parent.children = null;
+        }
+    }
+
+    // Сама зона и все домены в ней
+    int count(String zone) {
+        return count(find(split(normalize(zone))));
+    }
+
+    // Число записей в каждой непосредственной подзоне: полное имя -> количество
+    SortedMap<String, Integer> countSubzones(String zone) {
+        String normalized = normalize(zone);
+        Object found = find(split(normalized));
+        SortedMap<String, Integer> counts = new TreeMap<>();
+        if (found instanceof Node && ((Node) found).children != null) {
+            for (Map.Entry<String, Object> child : ((Node) found).children.entrySet()) {
+                counts.put(normalized.isEmpty() ? child.getKey() : child.getKey() + "." + normalized,
+                        count(child.getValue()));
+            }
+        }
+        return counts;
+    }
+
+    void collectZone(String zone, List<String> result) {
+        Object found = find(split(normalize(zone)));
+        if (found != null) {
+            collect(found, result);
+        }
+    }
+
+    // Шаблон из меток, "*" заменяет метку целиком. Крайняя левая "*" означает
+    // одну или несколько меток (*.example.com - все домены внутри example.com),
+    // остальные - ровно одну (www.*.example.com)
+    void collectMatching(String pattern, List<String> result) {
+        String[] path = split(normalize(pattern));
+        for (String label : path) {
+            if (label.indexOf('*') >= 0 && !label.equals("*")) {
+                throw new IllegalArgumentException("Некорректный шаблон: " + pattern +
+                        " (* должна заменять метку целиком)");
+            }
+        }
+        match(root, path, 0, result);
+    }
+
+    private static void match(Object found, String[] path, int depth, List<String> result) {
+        if (depth == path.length) {
+            String domain = found instanceof Node ? ((Node) found).domain : (String) found;
+            if (domain != null) {
+                result.add(domain);
+            }
+            return;
+        }
+        if (!(found instanceof Node) || ((Node) found).children == null) {
+            return;
+        }
+
+        TreeMap<String, Object> children = ((Node) found).children;
+        String label = path[depth];
+        if (!label.equals("*")) {
+            Object child = children.get(label);
+            if (child != null) {
+                match(child, path, depth + 1, result);
+            }
+        } else if (depth == path.length - 1) {
+            for (Object child : children.values()) {
+                collect(child, result);
+            }
+        } else {
+            for (Object child : children.values()) {
+                match(child, path, depth + 1, result);
+            }
+        }
+    }
+
+    // Node, домен или null
+    private Object find(String[] path) {
+        Object found = root;
+        for (String label : path) {
+            if (!(found instanceof Node) || ((Node) found).children == null) {
+                return null;
+            }
+            found = ((Node) found).children.get(label);
+        }
+        return found;
+    }
+
+    private static int count(Object found) {
+        if (found instanceof Node) {
+            return ((Node) found).count;
+        }
+        return found != null ? 1 : 0;
+    }
+
+    // Обход в глубину без рекурсии: глубина дерева задается данными.
+    // Дочерние узлы кладутся в стек в обратном порядке, чтобы выйти по возрастанию
+    private static void collect(Object start, List<String> result) {
+        Deque<Object> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            Object found = stack.pop();
+            if (!(found instanceof Node)) {
+                result.add((String) found);
+                continue;
+            }
+            Node node = (Node) found;
+            if (node.domain != null) {
+                result.add(node.domain);
+            }
+            if (node.children != null) {
+                for (Object child : node.children.descendingMap().values()) {
+                    stack.push(child);
+                }
+            }
+        }
+    }
+
+    private String internZoneLabel(String label) {
+        String pooled = zoneLabels.putIfAbsent(label, label);
+        return pooled != null ? pooled : label;
+    }
+
+    // Метки справа налево; пустая строка - корень
+    private static String[] split(String domain) {
+        if (domain.isEmpty()) {
+            return new String[0];
+        }
+        List<String> path = new ArrayList<>();
+        int end = domain.length();
+        while (end >= 0) {
+            int start = domain.lastIndexOf('.', end - 1);
+            path.add(domain.substring(start + 1, end));
+            end = start;
+        }
+        return path.toArray(new String[0]);
+    }
+
+    // Зона или шаблон из запроса: нижний регистр и без завершающей точки,
+    // "Example.COM." -> "example.com"
+    private static String normalize(String domain) {
+        String normalized = domain.trim().toLowerCase(Locale.ROOT);
+        return normalized.endsWith(".") ? normalized.substring(0, normalized.length() - 1) : normalized;
+    }
+}
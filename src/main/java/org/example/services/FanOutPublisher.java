@@ -0,0 +1,132 @@
+package org.example.services;
+
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpException;
+import org.example.dto.PushReport;
+import org.example.dto.SftpTarget;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Выгрузка таблицы на несколько SFTP-серверов. Данные сериализуются
+// (и сжимаются, если файл .gz) один раз во временный файл, который затем загружается на серверы параллельно,
+// не больше parallelism одновременно. У каждого сервера свое соединение,
+// свои попытки и таймаут, поэтому недоступный или медленный сервер
+// не останавливает выгрузку на остальные.
+// На сервере файл пишется под временным именем и переименовывается на место
+// основного (SftpService.replaceFile); читатели не видят недописанный файл.
+public class FanOutPublisher {
+    public static final int DEFAULT_PARALLELISM = 8;
+    public static final int DEFAULT_ATTEMPTS = 3;
+    public static final int DEFAULT_TIMEOUT_SECONDS = 30;
+    // Пауза перед повтором растет с номером попытки
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final List<SftpTarget> targets;
+    private final String remoteFilePath;
+    private final int parallelism;
+    private final int attempts;
+    private final int timeoutMillis;
+    private final int compressionLevel;
+
+    public FanOutPublisher(List<SftpTarget> targets, String remoteFilePath,
+                           int parallelism, int attempts, int timeoutSeconds, int compressionLevel) {
+        this.targets = targets;
+        this.remoteFilePath = remoteFilePath;
+        this.parallelism = parallelism;
+        this.attempts = attempts;
+        this.timeoutMillis = (int) TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        this.compressionLevel = compressionLevel;
+    }
+
+    // Ошибки отдельных серверов не бросаются, а попадают в отчет
+    public PushReport publish(DomainIpService domainIpService) throws IOException, InterruptedException {
+        long startTime = System.nanoTime();
+        Path tempFile = Files.createTempFile("domains", ".json");
+        try {
+            try (OutputStream outputStream = GzipCodec.encode(Files.newOutputStream(tempFile),
+                    remoteFilePath, compressionLevel)) {
+                domainIpService.writeData(outputStream);
+            }
+
+            AtomicInteger threadNumber = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, targets.size())),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "fan-out-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            List<PushReport.TargetResult> results = new ArrayList<>();
+            try {
+                List<Future<PushReport.TargetResult>> futures = new ArrayList<>();
+                for (SftpTarget target : targets) {
+                    futures.add(executor.submit(() -> push(target, tempFile)));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        results.add(futures.get(i).get());
+                    } catch (ExecutionException e) {
+                        results.add(new PushReport.TargetResult(targets.get(i), false, 0, 0,
+                                String.valueOf(e.getCause())));
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            return new PushReport(results, Files.size(tempFile),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private PushReport.TargetResult push(SftpTarget target, Path file) {
+        long startTime = System.nanoTime();
+        String error = null;
+        int attempt = 0;
+        while (attempt < attempts) {
+            attempt++;
+            try {
+                upload(target, file);
+                return new PushReport.TargetResult(target, true, attempt, elapsedMillis(startTime), null);
+            } catch (JSchException | SftpException | IOException e) {
+                error = e.getMessage();
+            }
+            if (attempt < attempts) {
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return new PushReport.TargetResult(target, false, attempt, elapsedMillis(startTime), error);
+    }
+
+    // Каждая попытка - новое соединение: после таймаута старое может быть в неизвестном состоянии
+    private void upload(SftpTarget target, Path file) throws JSchException, SftpException, IOException {
+        SftpService sftpService = new SftpService(target.getHost(), target.getPort(),
+                target.getUsername(), target.getPassword());
+        try {
+            sftpService.connect(timeoutMillis);
+            sftpService.replaceFile(remoteFilePath, outputStream -> Files.copy(file, outputStream));
+        } finally {
+            sftpService.disconnect();
+        }
+    }
+
+    private static long elapsedMillis(long startTime) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+}
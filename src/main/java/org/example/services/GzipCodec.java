@@ -0,0 +1,67 @@
+package org.example.services;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Сжатие файла данных gzip. При чтении формат определяется по сигнатуре
+// (1f 8b), поэтому сжатый файл читается под любым именем; при записи
+// сжимаются файлы с расширением .gz. Сжатие и распаковка идут потоком
+// между SFTP и JSON: файл целиком в памяти или на диске не собирается.
+public final class GzipCodec {
+    public static final int DEFAULT_LEVEL = 6;
+    public static final int MAX_LEVEL = 9;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAGIC_FIRST = 0x1f;
+    private static final int MAGIC_SECOND = 0x8b;
+
+    private GzipCodec() {
+    }
+
+    public static boolean isCompressed(String filePath) {
+        return filePath.endsWith(".gz");
+    }
+
+    // Распакованные данные или сам поток, если он не сжат.
+    // Закрытие результата освобождает распаковщик, но не закрывает inputStream
+    public static InputStream decode(InputStream inputStream) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(inputStream, 2);
+        int first = pushback.read();
+        int second = first >= 0 ? pushback.read() : -1;
+        if (second >= 0) {
+            pushback.unread(second);
+        }
+        if (first >= 0) {
+            pushback.unread(first);
+        }
+
+        InputStream source = new FilterInputStream(pushback) {
+            @Override
+            public void close() {
+                // Исходный поток закрывает тот, кто его открыл
+            }
+        };
+        if (first == MAGIC_FIRST && second == MAGIC_SECOND) {
+            return new GZIPInputStream(source, BUFFER_SIZE);
+        }
+        return source;
+    }
+
+    // Поток записи для файла filePath: сжимающий с уровнем level (1-9), если
+    // у файла расширение .gz, иначе outputStream без изменений. Закрытие
+    // результата дописывает конец gzip и закрывает outputStream
+    public static OutputStream encode(OutputStream outputStream, String filePath, int level) throws IOException {
+        return isCompressed(filePath) ? new LeveledGzipOutputStream(outputStream, level) : outputStream;
+    }
+
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+        LeveledGzipOutputStream(OutputStream outputStream, int level) throws IOException {
+            super(outputStream, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package org.example.services;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Обратный индекс IP -> домен на примитивных массивах.
+// Адреса хранятся как int, отсортированы для бинарного поиска;
+// на куче остаются только ссылки на строки доменов.
+//
+// Чтобы добавление и удаление не сдвигали основные массивы целиком,
+// удаленный адрес остается на месте с domain == null, а новые адреса
+// попадают в небольшой отсортированный буфер. Буфер и удаленные адреса
+// сливаются с основными массивами одним проходом, когда их набирается
+// порядка корня из размера индекса; средняя цена изменения - O(sqrt N).
+class Ipv4Index {
+    private static final int INITIAL_CAPACITY = 16;
+    // Меньше этого числа изменений слияние не выполняется
+    private static final int MIN_PENDING = 1024;
+
+    // Ключ - адрес со сдвинутым знаковым битом, чтобы порядок int совпадал с порядком адресов
+    private int[] keys;
+    private String[] domains;
+    private int size;
+    // Удаленные с последнего слияния: позиции с domain == null
+    private int removed;
+    // Добавленные с последнего слияния, отсортированы по ключу.
+    // Адреса нет одновременно в основных массивах и в буфере
+    private int[] addedKeys;
+    private String[] addedDomains;
+    private int addedSize;
+
+    Ipv4Index() {
+        this(new int[INITIAL_CAPACITY], new String[INITIAL_CAPACITY], 0);
+    }
+
+    // Массивы должны быть отсортированы по ключу (см. keyAt)
+    Ipv4Index(int[] keys, String[] domains, int size) {
+        this.keys = keys;
+        this.domains = domains;
+        this.size = size;
+        this.addedKeys = new int[INITIAL_CAPACITY];
+        this.addedDomains = new String[INITIAL_CAPACITY];
+    }
+
+    // Строит индекс за O(N log N). Из повторяющихся адресов остается
+    // первый по порядку записей; позиции вытесненных передаются в rejected.
+    static Ipv4Index build(RecordTable records, IntConsumer rejected) {
+        long[] packed = new long[records.size()];
+        int count = 0;
+        for (int position = 0; position < records.end(); position++) {
+            if (records.domain(position) != null) {
+                packed[count++] = ((long) toKey(records.ip(position)) << 32) | position;
+            }
+        }
+        Arrays.sort(packed, 0, count);
+
+        int[] keys = new int[Math.max(count, INITIAL_CAPACITY)];
+        String[] domains = new String[keys.length];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int key = (int) (packed[i] >> 32);
+            int position = (int) packed[i];
+            if (size > 0 && keys[size - 1] == key) {
+                rejected.accept(position);
+                continue;
+            }
+            keys[size] = key;
+            domains[size] = records.domain(position);
+            size++;
+        }
+        return new Ipv4Index(keys, domains, size);
+    }
+
+    // Копия уже без буфера и удаленных адресов
+    Ipv4Index copy() {
+        Ipv4Index copy = new Ipv4Index(Arrays.copyOf(keys, Math.max(size + addedSize, INITIAL_CAPACITY)),
+                Arrays.copyOf(domains, Math.max(size + addedSize, INITIAL_CAPACITY)), size);
+        copy.removed = removed;
+        copy.addedKeys = Arrays.copyOf(addedKeys, addedKeys.length);
+        copy.addedDomains = Arrays.copyOf(addedDomains, addedDomains.length);
+        copy.addedSize = addedSize;
+        copy.merge();
+        return copy;
+    }
+
+    String get(int ip) {
+        int key = toKey(ip);
+        int position = Arrays.binarySearch(keys, 0, size, key);
+        if (position >= 0) {
+            return domains[position];
+        }
+        position = Arrays.binarySearch(addedKeys, 0, addedSize, key);
+        return position >= 0 ? addedDomains[position] : null;
+    }
+
+    boolean put(int ip, String domain) {
+        int key = toKey(ip);
+        int position = Arrays.binarySearch(keys, 0, size, key);
+        if (position >= 0) {
+            if (domains[position] != null) {
+                return false;
+            }
+            // Адрес удален после последнего слияния: место в массиве еще свободно
+            domains[position] = domain;
+            removed--;
+            return true;
+        }
+
+        position = Arrays.binarySearch(addedKeys, 0, addedSize, key);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        if (addedSize == addedKeys.length) {
+            int newCapacity = addedKeys.length + (addedKeys.length >> 1);
+            addedKeys = Arrays.copyOf(addedKeys, newCapacity);
+            addedDomains = Arrays.copyOf(addedDomains, newCapacity);
+        }
+        System.arraycopy(addedKeys, position, addedKeys, position + 1, addedSize - position);
+        System.arraycopy(addedDomains, position, addedDomains, position + 1, addedSize - position);
+        addedKeys[position] = key;
+        addedDomains[position] = domain;
+        addedSize++;
+        mergeIfNeeded();
+        return true;
+    }
+
+    String remove(int ip) {
+        int key = toKey(ip);
+        int position = Arrays.binarySearch(keys, 0, size, key);
+        if (position >= 0) {
+            String domain = domains[position];
+            if (domain != null) {
+                domains[position] = null;
+                removed++;
+                mergeIfNeeded();
+            }
+            return domain;
+        }
+
+        position = Arrays.binarySearch(addedKeys, 0, addedSize, key);
+        if (position < 0) {
+            return null;
+        }
+        String domain = addedDomains[position];
+        System.arraycopy(addedKeys, position + 1, addedKeys, position, addedSize - position - 1);
+        System.arraycopy(addedDomains, position + 1, addedDomains, position, addedSize - position - 1);
+        addedSize--;
+        addedDomains[addedSize] = null;
+        return domain;
+    }
+
+    int size() {
+        return size - removed + addedSize;
+    }
+
+    // Домены с адресами от fromIp до toIp включительно (адреса сравниваются
+    // как беззнаковые) по возрастанию адреса. Поток читает массивы индекса
+    // напрямую, поэтому индекс нельзя менять, пока поток не дочитан
+    Stream<String> domainsInRange(int fromIp, int toIp) {
+        int fromKey = toKey(fromIp);
+        int toKey = toKey(toIp);
+        Iterator<String> iterator = new RangeIterator(
+                lowerBound(keys, size, fromKey), upperBound(keys, size, toKey),
+                lowerBound(addedKeys, addedSize, fromKey), upperBound(addedKeys, addedSize, toKey));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    // Индекс в виде одних отсортированных массивов для keyAt и domainAt:
+    // сам индекс, если ожидающих слияния изменений нет, иначе слитая копия
+    Ipv4Index merged() {
+        return removed == 0 && addedSize == 0 ? this : copy();
+    }
+
+    // Позиция в основных массивах; только для merged()
+    int keyAt(int position) {
+        return keys[position];
+    }
+
+    String domainAt(int position) {
+        return domains[position];
+    }
+
+    private void mergeIfNeeded() {
+        if (removed + addedSize > Math.max(MIN_PENDING, 2 * (int) Math.sqrt(size))) {
+            merge();
+        }
+    }
+
+    // Убирает удаленные адреса и вливает буфер в основные массивы на месте:
+    // сначала сжатие вперед, затем слияние с конца, чтобы не затереть непрочитанное
+    private void merge() {
+        if (removed > 0) {
+            int live = 0;
+            for (int i = 0; i < size; i++) {
+                if (domains[i] != null) {
+                    keys[live] = keys[i];
+                    domains[live] = domains[i];
+                    live++;
+                }
+            }
+            Arrays.fill(domains, live, size, null);
+            size = live;
+            removed = 0;
+        }
+        if (addedSize == 0) {
+            return;
+        }
+
+        int newSize = size + addedSize;
+        if (newSize > keys.length) {
+            int newCapacity = Math.max(newSize, keys.length + (keys.length >> 1));
+            keys = Arrays.copyOf(keys, newCapacity);
+            domains = Arrays.copyOf(domains, newCapacity);
+        }
+        int base = size - 1;
+        int added = addedSize - 1;
+        for (int target = newSize - 1; added >= 0; target--) {
+            if (base >= 0 && keys[base] > addedKeys[added]) {
+                keys[target] = keys[base];
+                domains[target] = domains[base];
+                base--;
+            } else {
+                keys[target] = addedKeys[added];
+                domains[target] = addedDomains[added];
+                added--;
+            }
+        }
+        size = newSize;
+        Arrays.fill(addedDomains, 0, addedSize, null);
+        addedSize = 0;
+    }
+
+    // Слияние двух отсортированных диапазонов: основных массивов (без удаленных) и буфера
+    private final class RangeIterator implements Iterator<String> {
+        private int base;
+        private final int baseEnd;
+        private int added;
+        private final int addedEnd;
+
+        RangeIterator(int base, int baseEnd, int added, int addedEnd) {
+            this.base = base;
+            this.baseEnd = baseEnd;
+            this.added = added;
+            this.addedEnd = addedEnd;
+            skipRemoved();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return base < baseEnd || added < addedEnd;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (added < addedEnd && (base >= baseEnd || addedKeys[added] < keys[base])) {
+                return addedDomains[added++];
+            }
+            String domain = domains[base++];
+            skipRemoved();
+            return domain;
+        }
+
+        private void skipRemoved() {
+            while (base < baseEnd && domains[base] == null) {
+                base++;
+            }
+        }
+    }
+
+    // Первая позиция с ключом не меньше key
+    private static int lowerBound(int[] keys, int size, int key) {
+        int position = Arrays.binarySearch(keys, 0, size, key);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    // Первая позиция с ключом больше key
+    private static int upperBound(int[] keys, int size, int key) {
+        int position = Arrays.binarySearch(keys, 0, size, key);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    private static int toKey(int ip) {
+        return ip ^ Integer.MIN_VALUE;
+    }
+}
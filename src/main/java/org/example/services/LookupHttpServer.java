@@ -0,0 +1,186 @@
+package org.example.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.Validator;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// HTTP-доступ к поиску для других сервисов на этой машине.
+// Запросы обслуживает фиксированный пул потоков; DomainIpService
+// должен быть создан в потокобезопасном режиме.
+//
+//   GET  /lookup?domain=<домен>   -> IP-адрес, 404 если не найден
+//   GET  /lookup?ip=<ip>          -> домен, 404 если не найден
+//   POST /lookup/batch            -> в теле по ключу (домен или IP) на строку,
+//                                    в ответе строки "ключ<TAB>результат",
+//                                    результат пустой, если не найден
+public class LookupHttpServer implements AutoCloseable {
+    public static final int DEFAULT_THREADS = 8;
+    public static final String DEFAULT_BIND_ADDRESS = "127.0.0.1";
+    private static final String TEXT_PLAIN = "text/plain; charset=utf-8";
+
+    static {
+        // Без TCP_NODELAY заголовки и тело ответа уходят разными пакетами, и каждый
+        // запрос ждет задержанного ACK (~40 мс). Значение читается при первом
+        // создании сервера, заданное явно в командной строке не переопределяется
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final DomainIpService domainIpService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public LookupHttpServer(DomainIpService domainIpService, String bindAddress, int port, int threads)
+            throws IOException {
+        this.domainIpService = domainIpService;
+        this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "lookup-http-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/lookup/batch", this::handleBatch);
+        server.createContext("/lookup", this::handleLookup);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleLookup(HttpExchange exchange) throws IOException {
+        try {
+            // Контекст /lookup принимает и любые пути с этим префиксом
+            if (!exchange.getRequestURI().getPath().equals("/lookup")) {
+                send(exchange, 404, "Не найдено: " + exchange.getRequestURI().getPath());
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("GET")) {
+                send(exchange, 405, "Метод не поддерживается");
+                return;
+            }
+
+            Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+            String domain = parameters.get("domain");
+            String ip = parameters.get("ip");
+            if ((domain == null) == (ip == null)) {
+                send(exchange, 400, "Укажите параметр domain или ip");
+                return;
+            }
+
+            String value;
+            String result;
+            if (domain != null) {
+                value = domain;
+                result = domainIpService.findIpByDomain(domain);
+            } else {
+                if (Validator.isNotValidIPv4(ip)) {
+                    send(exchange, 400, "Некорректный IPv4 адрес: " + ip);
+                    return;
+                }
+                value = ip;
+                result = domainIpService.findDomainByIp(ip);
+            }
+
+            if (result != null) {
+                send(exchange, 200, result);
+            } else {
+                send(exchange, 404, "Не найдено: " + value);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestURI().getPath().equals("/lookup/batch")) {
+                send(exchange, 404, "Не найдено: " + exchange.getRequestURI().getPath());
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("POST")) {
+                send(exchange, 405, "Метод не поддерживается");
+                return;
+            }
+
+            StringBuilder response = new StringBuilder();
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+            String key;
+            while ((key = reader.readLine()) != null) {
+                key = key.trim();
+                if (key.isEmpty()) {
+                    continue;
+                }
+                String result = Validator.isNotValidIPv4(key)
+                        ? domainIpService.findIpByDomain(key)
+                        : domainIpService.findDomainByIp(key);
+                response.append(key).append('\t');
+                if (result != null) {
+                    response.append(result);
+                }
+                response.append('\n');
+            }
+            send(exchange, 200, response.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Параметры вида name=value через &; имена и значения декодируются,
+    // при повторе имени остается первое значение
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String name = URLDecoder.decode(pair.substring(0, separator), "UTF-8");
+            String value = URLDecoder.decode(pair.substring(separator + 1), "UTF-8");
+            parameters.putIfAbsent(name, value);
+        }
+        return parameters;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", TEXT_PLAIN);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    // Текущие запросы получают секунду на завершение
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
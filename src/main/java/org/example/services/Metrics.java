@@ -0,0 +1,157 @@
+package org.example.services;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+// Встроенные метрики: счетчики (LongAdder) и гистограммы задержек.
+// Места замера берут метрику один раз в статическое поле, поэтому
+// запись - это только инкремент без блокировок и поиска по имени.
+// Доступ: JMX (org.example:type=Metrics) и периодический вывод в stderr.
+public final class Metrics implements MetricsMXBean {
+    public static final String SFTP_CONNECT_SESSION = "sftp.connect.session";
+    public static final String SFTP_CONNECT_CHANNEL = "sftp.connect.channel";
+    public static final String SFTP_DOWNLOAD = "sftp.download";
+    public static final String SFTP_DOWNLOAD_BYTES = "sftp.download.bytes";
+    public static final String SFTP_UPLOAD = "sftp.upload";
+    public static final String SFTP_UPLOAD_BYTES = "sftp.upload.bytes";
+    public static final String PARSE = "parse";
+    public static final String PARSE_RECORDS = "parse.records";
+    public static final String LOOKUP_DOMAIN = "lookup.domain";
+    public static final String LOOKUP_IP = "lookup.ip";
+    public static final String LOOKUPS_DOMAIN = "lookups.domain";
+    public static final String LOOKUPS_IP = "lookups.ip";
+    public static final String MUTATION = "mutation";
+
+    // Время поиска замеряется у каждого LOOKUP_SAMPLE-го вызова: сам поиск
+    // занимает около сотни наносекунд, и замер каждого вызова заметно его замедлил бы
+    public static final int LOOKUP_SAMPLE = 64;
+
+    private static final Metrics INSTANCE = new Metrics();
+    private static final String OBJECT_NAME = "org.example:type=Metrics";
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private ScheduledExecutorService dumpScheduler;
+
+    private Metrics() {
+    }
+
+    public static Metrics get() {
+        return INSTANCE;
+    }
+
+    public static LongAdder counter(String name) {
+        return INSTANCE.counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return INSTANCE.histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    public static boolean sampleLookup() {
+        return ThreadLocalRandom.current().nextInt(LOOKUP_SAMPLE) == 0;
+    }
+
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Уже зарегистрирован
+        } catch (JMException e) {
+            System.err.println("Не удалось зарегистрировать метрики в JMX: " + e.getMessage());
+        }
+    }
+
+    public synchronized void startDump(long intervalSeconds, PrintStream output) {
+        if (dumpScheduler != null) {
+            return;
+        }
+        dumpScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpScheduler.scheduleAtFixedRate(() -> output.println(getReport()),
+                intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopDump() {
+        if (dumpScheduler != null) {
+            dumpScheduler.shutdownNow();
+            dumpScheduler = null;
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((name, counter) -> result.put(name, counter.sum()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getLatencyCounts() {
+        return histogramValues(LatencyHistogram::getCount);
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP50Micros() {
+        return histogramValues(histogram -> TimeUnit.NANOSECONDS.toMicros(histogram.percentileNanos(0.50)));
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP99Micros() {
+        return histogramValues(histogram -> TimeUnit.NANOSECONDS.toMicros(histogram.percentileNanos(0.99)));
+    }
+
+    @Override
+    public Map<String, Long> getLatencyMaxMicros() {
+        return histogramValues(histogram -> TimeUnit.NANOSECONDS.toMicros(histogram.getMaxNanos()));
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder("=== Метрики ===\n");
+        new TreeMap<>(histograms).forEach((name, histogram) ->
+                report.append(name).append(": ").append(histogram).append('\n'));
+        getCounters().forEach((name, value) ->
+                report.append(name).append(": ").append(value).append('\n'));
+
+        appendRate(report, "Скачивание, МБ/с", SFTP_DOWNLOAD_BYTES, SFTP_DOWNLOAD, 1024.0 * 1024.0);
+        appendRate(report, "Выгрузка, МБ/с", SFTP_UPLOAD_BYTES, SFTP_UPLOAD, 1024.0 * 1024.0);
+        appendRate(report, "Разбор, записей/с", PARSE_RECORDS, PARSE, 1.0);
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        counters.values().forEach(LongAdder::reset);
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    // Средняя скорость: сумма счетчика на суммарное время операций
+    private void appendRate(StringBuilder report, String title, String counterName, String histogramName,
+                            double unit) {
+        LongAdder counter = counters.get(counterName);
+        LatencyHistogram histogram = histograms.get(histogramName);
+        if (counter == null || histogram == null || histogram.getTotalNanos() == 0) {
+            return;
+        }
+        double seconds = histogram.getTotalNanos() / 1e9;
+        report.append(title).append(": ").append(String.format("%.1f", counter.sum() / unit / seconds)).append('\n');
+    }
+
+    private Map<String, Long> histogramValues(ToLongFunction<LatencyHistogram> value) {
+        Map<String, Long> result = new TreeMap<>();
+        histograms.forEach((name, histogram) -> result.put(name, value.applyAsLong(histogram)));
+        return result;
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.services;
+
+import java.util.Map;
+
+// Метрики в JMX: org.example:type=Metrics (например, в JConsole или VisualVM)
+public interface MetricsMXBean {
+    Map<String, Long> getCounters();
+
+    Map<String, Long> getLatencyCounts();
+
+    Map<String, Long> getLatencyP50Micros();
+
+    Map<String, Long> getLatencyP99Micros();
+
+    Map<String, Long> getLatencyMaxMicros();
+
+    String getReport();
+
+    void reset();
+}
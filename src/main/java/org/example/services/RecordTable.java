@@ -0,0 +1,234 @@
+package org.example.services;
+
+import org.example.Validator;
+import org.example.dto.DomainIpRecord;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+// Записи в порядке добавления (порядок файла) на параллельных массивах:
+// домен хранится строкой, IP - как int, а DomainIpRecord создается только
+// при чтении, см. record. На запись приходится строка домена и около 16 байт
+// массивов против объекта записи, строки IP и узла LinkedHashMap.
+//
+// Поиск по домену без учета регистра идет по открытой хеш-таблице номеров
+// позиций с линейным пробированием. Удаленная запись оставляет пустую позицию
+// (domain == null); пустые позиции убираются, когда массивы заполняются,
+// поэтому номер позиции действителен только до следующего добавления.
+final class RecordTable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] domains;
+    private int[] ips;
+    // Использованные позиции, включая удаленные
+    private int end;
+    private int size;
+    // Номер позиции + 1 или 0 для свободной ячейки. Длина - степень двойки,
+    // заполнение не больше 2/3
+    private int[] table;
+
+    RecordTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    RecordTable(int expectedSize) {
+        int capacity = Math.max(expectedSize, INITIAL_CAPACITY);
+        domains = new String[capacity];
+        ips = new int[capacity];
+        table = new int[tableLength(expectedSize)];
+    }
+
+    private RecordTable(RecordTable source) {
+        domains = Arrays.copyOf(source.domains, source.domains.length);
+        ips = Arrays.copyOf(source.ips, source.ips.length);
+        end = source.end;
+        size = source.size;
+        table = Arrays.copyOf(source.table, source.table.length);
+    }
+
+    RecordTable copy() {
+        return new RecordTable(this);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Граница для обхода позиций: 0 <= position < end(), удаленные пропускаются
+    int end() {
+        return end;
+    }
+
+    // null для удаленной позиции
+    String domain(int position) {
+        return domains[position];
+    }
+
+    int ip(int position) {
+        return ips[position];
+    }
+
+    DomainIpRecord record(int position) {
+        return new DomainIpRecord(domains[position], Validator.formatIPv4(ips[position]));
+    }
+
+    // Позиция записи с доменом domain без учета регистра или -1
+    int find(String domain) {
+        String key = domainKey(domain);
+        int mask = table.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (key.equals(domainKey(domains[entry - 1]))) {
+                return entry - 1;
+            }
+        }
+    }
+
+    // Домена в таблице быть не должно, см. find
+    void add(String domain, int ip) {
+        if (end == domains.length) {
+            // Удаленных больше половины - хватит сжатия, иначе массивы растут
+            compact(size * 2 > domains.length ? domains.length + (domains.length >> 1) : domains.length);
+            rehash(tableLength(size + 1));
+        }
+        domains[end] = domain;
+        ips[end] = ip;
+        end++;
+        size++;
+        if (table.length < tableLength(size)) {
+            rehash(table.length * 2);
+        } else {
+            insert(end - 1);
+        }
+    }
+
+    // Удаление из хеш-таблицы со сдвигом назад: следующие записи той же цепочки
+    // занимают освободившуюся ячейку, поэтому поиск не встречает пропусков
+    void remove(int position) {
+        int mask = table.length - 1;
+        int slot = hash(domainKey(domains[position])) & mask;
+        while (table[slot] != position + 1) {
+            slot = (slot + 1) & mask;
+        }
+        for (int next = (slot + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = hash(domainKey(domains[table[next] - 1])) & mask;
+            // Запись может занять ячейку slot, если ее начальная ячейка не лежит между slot и next
+            if (slot <= next ? home <= slot || home > next : home <= slot && home > next) {
+                table[slot] = table[next];
+                slot = next;
+            }
+        }
+        table[slot] = 0;
+
+        domains[position] = null;
+        size--;
+        if (position == end - 1) {
+            end--;
+        }
+    }
+
+    // Убирает удаленные позиции и лишнее место в массивах, например после загрузки
+    void trim() {
+        boolean compacted = end != size || domains.length != Math.max(size, INITIAL_CAPACITY);
+        if (compacted) {
+            compact(Math.max(size, INITIAL_CAPACITY));
+        }
+        if (compacted || table.length != tableLength(size)) {
+            rehash(tableLength(size));
+        }
+    }
+
+    // Записи в порядке добавления; объекты создаются при обходе.
+    // В обычном режиме обход нужно закончить до следующего изменения
+    Iterable<DomainIpRecord> records() {
+        return () -> new Iterator<DomainIpRecord>() {
+            private int position = skipRemoved(0);
+
+            @Override
+            public boolean hasNext() {
+                return position < end;
+            }
+
+            @Override
+            public DomainIpRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                DomainIpRecord record = record(position);
+                position = skipRemoved(position + 1);
+                return record;
+            }
+        };
+    }
+
+    private int skipRemoved(int position) {
+        while (position < end && domains[position] == null) {
+            position++;
+        }
+        return position;
+    }
+
+    // Сжатие вперед на месте или перенос в массивы новой длины;
+    // позиции меняются, хеш-таблицу после него нужно перестроить
+    private void compact(int capacity) {
+        String[] newDomains = capacity == domains.length ? domains : new String[capacity];
+        int[] newIps = capacity == ips.length ? ips : new int[capacity];
+        int live = 0;
+        for (int i = 0; i < end; i++) {
+            if (domains[i] != null) {
+                newDomains[live] = domains[i];
+                newIps[live] = ips[i];
+                live++;
+            }
+        }
+        if (newDomains == domains) {
+            Arrays.fill(domains, live, end, null);
+        }
+        domains = newDomains;
+        ips = newIps;
+        end = live;
+    }
+
+    private void rehash(int length) {
+        table = new int[length];
+        for (int i = 0; i < end; i++) {
+            if (domains[i] != null) {
+                insert(i);
+            }
+        }
+    }
+
+    private void insert(int position) {
+        int mask = table.length - 1;
+        int slot = hash(domainKey(domains[position])) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = position + 1;
+    }
+
+    private static int tableLength(int size) {
+        int length = INITIAL_CAPACITY;
+        while (length < size + (size >> 1) + 1) {
+            length <<= 1;
+        }
+        return length;
+    }
+
+    // Перемешивание хеша строки, чтобы похожие домены не шли в соседние ячейки
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // toLowerCase возвращает ту же строку, если менять нечего: для доменов
+    // в нижнем регистре ключ не создается заново и хеш не пересчитывается
+    static String domainKey(String domain) {
+        return domain.toLowerCase(Locale.ROOT);
+    }
+}
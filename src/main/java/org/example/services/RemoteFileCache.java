@@ -0,0 +1,241 @@
+package org.example.services;
+
+import com.jcraft.jsch.SftpATTRS;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+// Локальная копия удаленного файла с ключом по хосту и пути.
+// Копия считается актуальной, если размер и время изменения на сервере
+// совпадают с сохраненными. Для каждой копии хранится SHA-256 содержимого,
+// чтобы при необходимости отличить перезапись файла с тем же размером и mtime.
+public class RemoteFileCache {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final String host;
+    private final int port;
+
+    public RemoteFileCache(Path directory, String host, int port) {
+        this.directory = directory;
+        this.host = host;
+        this.port = port;
+    }
+
+    public static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".sftp-client", "cache");
+    }
+
+    // Возвращает путь к актуальной копии или null
+    public Path find(String remoteFilePath, SftpATTRS attrs) throws IOException {
+        String key = key(remoteFilePath);
+        Path dataFile = directory.resolve(key + ".data");
+        Properties meta = readMeta(key);
+        if (meta == null || !Files.exists(dataFile)) {
+            return null;
+        }
+
+        boolean matches = String.valueOf(attrs.getSize()).equals(meta.getProperty("size"))
+                && String.valueOf(attrs.getMTime()).equals(meta.getProperty("mtime"))
+                && Files.size(dataFile) == attrs.getSize();
+        return matches ? dataFile : null;
+    }
+
+    // Двоичный снимок рядом с актуальной копией, если он был сохранен
+    public Path findSnapshot(String remoteFilePath) {
+        Path snapshotFile = directory.resolve(key(remoteFilePath) + ".snapshot");
+        return Files.exists(snapshotFile) ? snapshotFile : null;
+    }
+
+    // Сохраняет двоичный снимок данных, загруженных из текущей копии
+    public void saveSnapshot(String remoteFilePath, DomainIpService domainIpService) throws IOException {
+        String key = key(remoteFilePath);
+        Path tempFile = Files.createTempFile(directory, key, ".snapshot.tmp");
+        try {
+            domainIpService.saveSnapshot(tempFile);
+            Files.move(tempFile, directory.resolve(key + ".snapshot"), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    public String getChecksum(String remoteFilePath) throws IOException {
+        Properties meta = readMeta(key(remoteFilePath));
+        return meta != null ? meta.getProperty("sha256") : null;
+    }
+
+    // Сохраняет уже скачанный файл в кэш (файл перемещается)
+    public Path store(String remoteFilePath, SftpATTRS attrs, Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        Files.createDirectories(directory);
+        return commit(remoteFilePath, attrs, file, toHex(digest.digest()));
+    }
+
+    // Оборачивает поток с сервера: прочитанные данные параллельно пишутся в кэш.
+    // Копия сохраняется только после вызова complete().
+    public CachingInputStream cacheWhileReading(String remoteFilePath, SftpATTRS attrs, InputStream source)
+            throws IOException {
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, key(remoteFilePath), ".tmp");
+        return new CachingInputStream(source, remoteFilePath, attrs, tempFile);
+    }
+
+    // Считает SHA-256 потока, например удаленного файла, без записи на диск
+    public static String checksum(InputStream inputStream) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = inputStream.read(buffer)) > 0) {
+            digest.update(buffer, 0, read);
+        }
+        return toHex(digest.digest());
+    }
+
+    public class CachingInputStream extends FilterInputStream {
+        private final String remoteFilePath;
+        private final SftpATTRS attrs;
+        private final Path tempFile;
+        private final OutputStream copy;
+        private final MessageDigest digest = newDigest();
+        private boolean completed;
+
+        private CachingInputStream(InputStream source, String remoteFilePath, SftpATTRS attrs, Path tempFile)
+                throws IOException {
+            super(source);
+            this.remoteFilePath = remoteFilePath;
+            this.attrs = attrs;
+            this.tempFile = tempFile;
+            this.copy = new BufferedOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                copy.write(b);
+                digest.update((byte) b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                copy.write(buffer, offset, read);
+                digest.update(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Пропущенные байты тоже должны попасть в копию
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        // Дочитывает остаток потока и сохраняет копию в кэш
+        public Path complete() throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // только копирование в кэш
+            }
+            copy.close();
+            completed = true;
+            return commit(remoteFilePath, attrs, tempFile, toHex(digest.digest()));
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (!completed) {
+                    copy.close();
+                    Files.deleteIfExists(tempFile);
+                }
+            }
+        }
+    }
+
+    // Старые метаданные удаляются до замены данных, чтобы прерванная
+    // запись не оставила копию, которая выглядит актуальной
+    private Path commit(String remoteFilePath, SftpATTRS attrs, Path file, String checksum) throws IOException {
+        String key = key(remoteFilePath);
+        Path dataFile = directory.resolve(key + ".data");
+        Files.deleteIfExists(directory.resolve(key + ".properties"));
+        Files.deleteIfExists(directory.resolve(key + ".snapshot"));
+        Files.move(file, dataFile, StandardCopyOption.REPLACE_EXISTING);
+        writeMeta(key, remoteFilePath, attrs, checksum);
+        return dataFile;
+    }
+
+    private Properties readMeta(String key) throws IOException {
+        Path metaFile = directory.resolve(key + ".properties");
+        if (!Files.exists(metaFile)) {
+            return null;
+        }
+        Properties meta = new Properties();
+        try (Reader reader = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+            meta.load(reader);
+        }
+        return meta;
+    }
+
+    private void writeMeta(String key, String remoteFilePath, SftpATTRS attrs, String checksum) throws IOException {
+        Properties meta = new Properties();
+        meta.setProperty("host", host + ":" + port);
+        meta.setProperty("path", remoteFilePath);
+        meta.setProperty("size", String.valueOf(attrs.getSize()));
+        meta.setProperty("mtime", String.valueOf(attrs.getMTime()));
+        meta.setProperty("sha256", checksum);
+
+        Path tempFile = Files.createTempFile(directory, key, ".properties.tmp");
+        try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            meta.store(writer, null);
+        }
+        Files.move(tempFile, directory.resolve(key + ".properties"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private String key(String remoteFilePath) {
+        MessageDigest digest = newDigest();
+        digest.update((host + ":" + port + remoteFilePath).getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest()).substring(0, 32);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 обязателен для любой реализации Java
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
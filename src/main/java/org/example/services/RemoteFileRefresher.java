@@ -0,0 +1,131 @@
+package org.example.services;
+
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+
+import java.io.InputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Фоновая синхронизация с файлом на сервере. По расписанию проверяет
+// размер и время изменения файла (и журнала, если он включен); при изменении
+// новая версия разбирается в отдельный экземпляр DomainIpService и подменяет
+// текущие данные одной операцией. Поиск во время загрузки не блокируется.
+// Работает на собственном соединении из пула: основное соединение занято
+// выгрузкой изменений, а ChannelSftp не потокобезопасен.
+// При ошибках интервал опроса удваивается до maxBackoffSeconds.
+public class RemoteFileRefresher implements AutoCloseable {
+    public static final long DEFAULT_MAX_BACKOFF_SECONDS = 300;
+
+    private final SftpChannelPool pool;
+    private final String remoteFilePath;
+    private final boolean withJournal;
+    private final WriteBehindQueue writeBehindQueue;
+    private final long intervalSeconds;
+    private final long maxBackoffSeconds;
+    private final ScheduledExecutorService scheduler;
+
+    // Файл на момент последнего опроса; загруженная после него версия не старше
+    private SftpATTRS polledAttrs;
+    private String lastSignature;
+    private int failures;
+
+    public RemoteFileRefresher(SftpChannelPool pool, String remoteFilePath, boolean withJournal,
+                               WriteBehindQueue writeBehindQueue, long intervalSeconds, long maxBackoffSeconds) {
+        this.pool = pool;
+        this.remoteFilePath = remoteFilePath;
+        this.withJournal = withJournal;
+        this.writeBehindQueue = writeBehindQueue;
+        this.intervalSeconds = intervalSeconds;
+        this.maxBackoffSeconds = Math.max(intervalSeconds, maxBackoffSeconds);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "remote-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Запоминает текущую версию файла на сервере (данные уже загружены) и запускает опрос
+    public void start() throws Exception {
+        lastSignature = pool.execute(this::signature);
+        schedule(intervalSeconds);
+    }
+
+    private void schedule(long delaySeconds) {
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::poll, delaySeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private void poll() {
+        try {
+            long publishCount = writeBehindQueue.getPublishCount();
+            String signature = pool.execute(this::signature);
+            // Если загруженная версия устарела из-за нашей выгрузки, файл проверяется снова при следующем опросе
+            if (!signature.equals(lastSignature) && reload(publishCount)) {
+                lastSignature = signature;
+            }
+            failures = 0;
+            schedule(intervalSeconds);
+        } catch (Exception e) {
+            failures++;
+            long delay = Math.min(maxBackoffSeconds, intervalSeconds << Math.min(failures, 20));
+            System.err.println("Ошибка синхронизации с сервером: " + e.getMessage() +
+                    ". Следующая попытка через " + delay + " сек.");
+            schedule(delay);
+        }
+    }
+
+    // Файл и журнал читаются на одном соединении; текущие данные не меняются до подмены.
+    // Возвращает false, если за время загрузки прошла наша выгрузка и данные не подменены
+    private boolean reload(long publishCount) throws Exception {
+        DomainIpService fresh = pool.execute(sftpService -> {
+            DomainIpService loaded = new DomainIpService();
+            try (InputStream inputStream = sftpService.openDownloadStream(remoteFilePath)) {
+                loaded.loadData(inputStream);
+            }
+            if (withJournal) {
+                new ChangeJournal(sftpService, remoteFilePath, ChangeJournal.DEFAULT_MAX_ENTRIES,
+                        ChangeJournal.DEFAULT_MAX_AGE_MINUTES).replay(loaded);
+            }
+            return loaded;
+        });
+
+        int recordCount = fresh.getRecordCount();
+        int dropped = writeBehindQueue.rebase(fresh, polledAttrs, publishCount);
+        if (dropped < 0) {
+            return false;
+        }
+        System.out.println("Данные обновлены с сервера: " + recordCount + " записей." +
+                (dropped > 0 ? " Не удалось применить невыгруженных изменений: " + dropped + "." : ""));
+        return true;
+    }
+
+    // Размер и время изменения файла и журнала
+    private String signature(SftpService sftpService) throws SftpException {
+        SftpATTRS attrs = sftpService.stat(remoteFilePath);
+        polledAttrs = attrs;
+        String signature = attrs.getSize() + ":" + attrs.getMTime();
+        if (withJournal) {
+            String logPath = ChangeJournal.logPath(remoteFilePath);
+            if (sftpService.exists(logPath)) {
+                SftpATTRS logAttrs = sftpService.stat(logPath);
+                signature += "/" + logAttrs.getSize() + ":" + logAttrs.getMTime();
+            }
+        }
+        return signature;
+    }
+
+    // Прерывает текущую загрузку, если она идет: данные при этом не меняются
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pool.close();
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.services;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+// Блокировка между клиентами одного сервера: каталог path с файлом owner внутри.
+// Каталог создает только один клиент, см. SftpService.createDirectory, а owner
+// позволяет владельцу проверить, что блокировку не сняли.
+//
+// Блокировку клиента, который прервался, не сняв ее, через staleSeconds снимает
+// следующий: каталог переименовывается под уникальным именем, поэтому одну
+// и ту же блокировку снимает только один клиент. Если владелец работал дольше
+// staleSeconds, его блокировку тоже снимут; isHeld позволяет это заметить.
+class RemoteLock {
+    private static final String OWNER = "/owner";
+    private static final long RETRY_MILLIS = 50;
+    // Код ошибки из SFTP v5, JSch его не объявляет
+    private static final int SSH_FX_FILE_ALREADY_EXISTS = 11;
+
+    private final SftpService sftpService;
+    private final String path;
+    private final long staleSeconds;
+
+    // Идентификатор владельца, пока блокировка взята
+    private String owner;
+
+    RemoteLock(SftpService sftpService, String path, long staleSeconds) {
+        this.sftpService = sftpService;
+        this.path = path;
+        this.staleSeconds = staleSeconds;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    // Возвращает false, если блокировку держит другой клиент
+    boolean tryAcquire() throws SftpException, IOException {
+        if (!createDirectory() && !(breakStale() && createDirectory())) {
+            return false;
+        }
+        String id = UUID.randomUUID().toString();
+        try (OutputStream outputStream = sftpService.openUploadStream(path + OWNER)) {
+            outputStream.write(id.getBytes(StandardCharsets.UTF_8));
+        } catch (SftpException | IOException e) {
+            // Каталог наш, хотя owner не записан
+            try {
+                if (sftpService.exists(path + OWNER)) {
+                    sftpService.deleteFile(path + OWNER);
+                }
+                sftpService.deleteDirectory(path);
+            } catch (SftpException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        owner = id;
+        return true;
+    }
+
+    // Ждет освобождения блокировки не дольше timeoutMillis
+    boolean acquire(long timeoutMillis) throws SftpException, IOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!tryAcquire()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Ожидание блокировки " + path + " прервано");
+            }
+        }
+        return true;
+    }
+
+    boolean isHeld() throws SftpException {
+        if (owner == null) {
+            return false;
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream inputStream = sftpService.openDownloadStream(path + OWNER)) {
+            byte[] buffer = new byte[64];
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                content.write(buffer, 0, read);
+            }
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                return false;
+            }
+            throw e;
+        } catch (IOException e) {
+            return false;
+        }
+        return owner.equals(new String(content.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    // Ошибка снятия не пробрасывается: зависшую блокировку снимет следующий клиент
+    void release() {
+        try {
+            if (isHeld()) {
+                sftpService.deleteFile(path + OWNER);
+                sftpService.deleteDirectory(path);
+            }
+        } catch (SftpException e) {
+            System.err.println("Не удалось снять блокировку " + path + ": " + e.getMessage());
+        } finally {
+            owner = null;
+        }
+    }
+
+    private boolean createDirectory() throws SftpException {
+        try {
+            sftpService.createDirectory(path);
+            return true;
+        } catch (SftpException e) {
+            // Существующий каталог: SSH_FX_FAILURE у OpenSSH, FILE_ALREADY_EXISTS у серверов
+            // SFTP v5+. Владелец мог снять блокировку сразу после нашей попытки
+            if (e.id == ChannelSftp.SSH_FX_FAILURE || e.id == SSH_FX_FILE_ALREADY_EXISTS
+                    || sftpService.exists(path)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    // Возвращает false, если блокировка еще действует
+    private boolean breakStale() throws SftpException {
+        String stalePath = path + "." + UUID.randomUUID() + ".stale";
+        try {
+            long ageSeconds = System.currentTimeMillis() / 1000 - sftpService.stat(path).getMTime();
+            if (ageSeconds < staleSeconds) {
+                return false;
+            }
+            sftpService.rename(path, stalePath);
+        } catch (SftpException e) {
+            // Блокировку уже сняли
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                return true;
+            }
+            throw e;
+        }
+
+        System.err.println("Снята зависшая блокировка " + path);
+        try {
+            sftpService.deleteFile(stalePath + OWNER);
+        } catch (SftpException e) {
+            // Клиент мог прерваться до записи owner
+        }
+        sftpService.deleteDirectory(stalePath);
+        return true;
+    }
+}
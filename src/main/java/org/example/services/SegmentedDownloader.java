@@ -0,0 +1,111 @@
+package org.example.services;
+
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Параллельное скачивание большого файла частями. Размер файла берется из stat,
+// каждая часть читается по своему каналу из пула со смещением и пишется
+// в заранее выделенный локальный файл позиционной записью.
+public class SegmentedDownloader {
+    public static final int DEFAULT_SEGMENT_SIZE_MB = 8;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SftpChannelPool pool;
+    private final long segmentSize;
+    private final int parallelism;
+
+    public SegmentedDownloader(SftpChannelPool pool, long segmentSize, int parallelism) {
+        this.pool = pool;
+        this.segmentSize = segmentSize;
+        this.parallelism = parallelism;
+    }
+
+    public void download(String remoteFilePath, Path localFilePath)
+            throws JSchException, SftpException, IOException, InterruptedException {
+        SftpATTRS before = pool.execute(sftpService -> sftpService.stat(remoteFilePath));
+        long size = before.getSize();
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try (FileChannel fileChannel = FileChannel.open(localFilePath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // Выделяем место под весь файл, части пишутся в произвольном порядке
+            if (size > 0) {
+                fileChannel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+            }
+
+            List<Future<Void>> segments = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += segmentSize) {
+                long segmentOffset = offset;
+                long segmentLength = Math.min(segmentSize, size - offset);
+                segments.add(executor.submit(() -> pool.execute(sftpService -> {
+                    downloadSegment(sftpService, remoteFilePath, fileChannel, segmentOffset, segmentLength);
+                    return null;
+                })));
+            }
+            // Каждая часть либо записана целиком, либо завершилась ошибкой, см. downloadSegment
+            awaitAll(segments);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Файл не должен был измениться во время скачивания
+        SftpATTRS after = pool.execute(sftpService -> sftpService.stat(remoteFilePath));
+        if (after.getSize() != size || after.getMTime() != before.getMTime()) {
+            throw new IOException("Файл " + remoteFilePath + " изменился на сервере во время скачивания");
+        }
+    }
+
+    private static void downloadSegment(SftpService sftpService, String remoteFilePath, FileChannel fileChannel,
+                                        long offset, long length) throws SftpException, IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = offset;
+        long remaining = length;
+
+        try (InputStream inputStream = sftpService.openDownloadStream(remoteFilePath, offset)) {
+            while (remaining > 0) {
+                int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Неожиданный конец файла на позиции " + position);
+                }
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    position += fileChannel.write(chunk, position);
+                }
+                remaining -= read;
+            }
+        }
+    }
+
+    private static void awaitAll(List<Future<Void>> segments)
+            throws JSchException, SftpException, IOException, InterruptedException {
+        for (Future<Void> segment : segments) {
+            try {
+                segment.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof JSchException) {
+                    throw (JSchException) cause;
+                }
+                if (cause instanceof SftpException) {
+                    throw (SftpException) cause;
+                }
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Ошибка при скачивании части файла: " + cause.getMessage(), cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.example.services;
+
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpException;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Пул SFTP-соединений для параллельных передач. ChannelSftp не потокобезопасен,
+// поэтому каждая передача получает собственное соединение (сессия + канал).
+// Число соединений ограничено, простаивающие дольше таймаута закрываются,
+// разорванные соединения заменяются новыми.
+public class SftpChannelPool implements AutoCloseable {
+    public static final int DEFAULT_MAX_SIZE = 4;
+    public static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 60;
+
+    public interface SftpTask<T> {
+        T execute(SftpService sftpService) throws SftpException, IOException;
+    }
+
+    private static class IdleConnection {
+        final SftpService sftpService;
+        final long releasedAt;
+
+        IdleConnection(SftpService sftpService, long releasedAt) {
+            this.sftpService = sftpService;
+            this.releasedAt = releasedAt;
+        }
+    }
+
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+
+    private final Semaphore permits;
+    // Последнее возвращенное соединение - в голове очереди
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    private boolean closed;
+
+    public SftpChannelPool(String host, int port, String username, String password,
+                           int maxSize, long idleTimeoutSeconds) {
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    // Выдает рабочее соединение, ожидая освобождения, если все заняты
+    public SftpService borrow() throws JSchException, SftpException, InterruptedException {
+        permits.acquire();
+        try {
+            SftpService sftpService;
+            while ((sftpService = pollIdle()) != null) {
+                if (sftpService.isConnected()) {
+                    return sftpService;
+                }
+                sftpService.disconnect();
+            }
+
+            sftpService = new SftpService(host, port, username, password);
+            try {
+                sftpService.connect();
+            } catch (JSchException | SftpException e) {
+                sftpService.disconnect();
+                throw e;
+            }
+            return sftpService;
+        } catch (JSchException | SftpException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void release(SftpService sftpService) {
+        boolean keep;
+        synchronized (this) {
+            keep = !closed && sftpService.isConnected();
+            if (keep) {
+                idle.addFirst(new IdleConnection(sftpService, System.currentTimeMillis()));
+                evictExpired();
+            }
+        }
+        if (!keep) {
+            sftpService.disconnect();
+        }
+        permits.release();
+    }
+
+    // Для соединений, которые нельзя использовать повторно
+    public void invalidate(SftpService sftpService) {
+        sftpService.disconnect();
+        permits.release();
+    }
+
+    // Выполняет задачу на соединении из пула. Если соединение разорвалось,
+    // задача повторяется один раз на новом соединении.
+    public <T> T execute(SftpTask<T> task) throws JSchException, SftpException, IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            SftpService sftpService = borrow();
+            try {
+                T result = task.execute(sftpService);
+                release(sftpService);
+                return result;
+            } catch (SftpException | IOException | RuntimeException e) {
+                if (sftpService.isConnected()) {
+                    release(sftpService);
+                    throw e;
+                }
+                invalidate(sftpService);
+                if (attempt >= 2) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public synchronized void evictIdle() {
+        evictExpired();
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private synchronized SftpService pollIdle() {
+        evictExpired();
+        IdleConnection connection = idle.pollFirst();
+        return connection != null ? connection.sftpService : null;
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<IdleConnection> iterator = idle.descendingIterator();
+        while (iterator.hasNext()) {
+            IdleConnection connection = iterator.next();
+            if (now - connection.releasedAt < idleTimeoutMillis) {
+                break;
+            }
+            iterator.remove();
+            connection.sftpService.disconnect();
+        }
+    }
+
+    // Закрывает простаивающие соединения; занятые закрываются при возврате
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (IdleConnection connection : idle) {
+            connection.sftpService.disconnect();
+        }
+        idle.clear();
+    }
+}
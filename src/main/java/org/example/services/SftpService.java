@@ -4,8 +4,28 @@ import com.jcraft.jsch.*;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
 
 public class SftpService {
+    private static final LatencyHistogram CONNECT_SESSION = Metrics.histogram(Metrics.SFTP_CONNECT_SESSION);
+    private static final LatencyHistogram CONNECT_CHANNEL = Metrics.histogram(Metrics.SFTP_CONNECT_CHANNEL);
+    private static final LatencyHistogram DOWNLOAD = Metrics.histogram(Metrics.SFTP_DOWNLOAD);
+    private static final LongAdder DOWNLOAD_BYTES = Metrics.counter(Metrics.SFTP_DOWNLOAD_BYTES);
+    private static final LatencyHistogram UPLOAD = Metrics.histogram(Metrics.SFTP_UPLOAD);
+    private static final LongAdder UPLOAD_BYTES = Metrics.counter(Metrics.SFTP_UPLOAD_BYTES);
+    private static final String POSIX_RENAME = "posix-rename@openssh.com";
+
+    // Запись содержимого файла в поток; поток можно закрыть и самому
+    public interface Upload {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    // Проверка перед заменой файла; false отменяет замену
+    public interface ReplaceCondition {
+        boolean test() throws SftpException;
+    }
+
     private final String host;
     private final int port;
     private final String username;
@@ -22,36 +42,168 @@ public class SftpService {
     }
 
     public void connect() throws JSchException, SftpException {
+        connect(0);
+    }
+
+    // timeoutMillis ограничивает подключение и каждое чтение из сокета,
+    // поэтому зависший сервер приводит к ошибке, а не к вечному ожиданию;
+    // 0 - без ограничения
+    public void connect(int timeoutMillis) throws JSchException, SftpException {
         JSch jsch = new JSch();
         session = jsch.getSession(username, host, port);
         session.setPassword(password);
 
         // Отключаем проверку хоста (для тестовых сред)
         session.setConfig("StrictHostKeyChecking", "no");
+        session.setTimeout(timeoutMillis);
+
+        // Установка сессии: TCP, обмен ключами и аутентификация
+        long startTime = System.nanoTime();
+        session.connect(timeoutMillis);
+        CONNECT_SESSION.recordSince(startTime);
 
-        session.connect();
+        startTime = System.nanoTime();
         Channel sessionChannel = session.openChannel("sftp");
-        sessionChannel.connect();
+        sessionChannel.connect(timeoutMillis);
         this.channel = (ChannelSftp) sessionChannel;
+        CONNECT_CHANNEL.recordSince(startTime);
     }
 
     public String downloadFile(String remoteFilePath) throws SftpException, IOException {
         File tempFile = File.createTempFile("domains", ".json");
         tempFile.deleteOnExit();
 
-        OutputStream outputStream = Files.newOutputStream(tempFile.toPath());
+        OutputStream outputStream = new CountingOutputStream(Files.newOutputStream(tempFile.toPath()),
+                DOWNLOAD, DOWNLOAD_BYTES);
         channel.get(remoteFilePath, outputStream);
         outputStream.close();
 
         return tempFile.getAbsolutePath();
     }
 
+    // Поток чтения удаленного файла: данные можно разбирать по мере передачи,
+    // без промежуточного файла на диске. Поток нужно закрыть после чтения.
+    public InputStream openDownloadStream(String remoteFilePath) throws SftpException {
+        return new CountingInputStream(channel.get(remoteFilePath), DOWNLOAD, DOWNLOAD_BYTES);
+    }
+
     public void uploadFile(String localFilePath, String remoteFilePath) throws SftpException, IOException {
-        try (InputStream inputStream = Files.newInputStream(Paths.get(localFilePath))) {
+        try (InputStream inputStream = new CountingInputStream(Files.newInputStream(Paths.get(localFilePath)),
+                UPLOAD, UPLOAD_BYTES)) {
             channel.put(inputStream, remoteFilePath);
         }
     }
 
+    // Поток чтения удаленного файла начиная с указанного смещения
+    public InputStream openDownloadStream(String remoteFilePath, long offset) throws SftpException {
+        return new CountingInputStream(channel.get(remoteFilePath, null, offset), DOWNLOAD, DOWNLOAD_BYTES);
+    }
+
+    // Поток записи в удаленный файл: данные уходят на сервер по мере сериализации.
+    // Файл считается записанным после закрытия потока.
+    public OutputStream openUploadStream(String remoteFilePath) throws SftpException {
+        return new CountingOutputStream(channel.put(remoteFilePath), UPLOAD, UPLOAD_BYTES);
+    }
+
+    // Поток дозаписи в конец удаленного файла; файл создается, если его нет
+    public OutputStream openAppendStream(String remoteFilePath) throws SftpException {
+        return new CountingOutputStream(channel.put(remoteFilePath, ChannelSftp.APPEND), UPLOAD, UPLOAD_BYTES);
+    }
+
+    public SftpATTRS stat(String remoteFilePath) throws SftpException {
+        return channel.stat(remoteFilePath);
+    }
+
+    public boolean exists(String remoteFilePath) throws SftpException {
+        try {
+            channel.stat(remoteFilePath);
+            return true;
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    // Если сервер поддерживает posix-rename@openssh.com, JSch использует его,
+    // и существующий файл заменяется атомарно. Иначе JSch отправляет обычный
+    // RENAME, который на большинстве серверов не перезаписывает существующий
+    // файл; тогда файл удаляется и переименование повторяется. Между удалением
+    // и переименованием файла toPath на сервере нет: читатель в этот момент
+    // получит ошибку "нет такого файла", а не недописанные данные
+    public void rename(String fromPath, String toPath) throws SftpException {
+        if (supportsAtomicRename()) {
+            channel.rename(fromPath, toPath);
+            return;
+        }
+        try {
+            channel.rename(fromPath, toPath);
+        } catch (SftpException e) {
+            if (!exists(toPath)) {
+                throw e;
+            }
+            channel.rm(toPath);
+            channel.rename(fromPath, toPath);
+        }
+    }
+
+    public boolean supportsAtomicRename() {
+        return channel.getExtension(POSIX_RENAME) != null;
+    }
+
+    public void deleteFile(String remoteFilePath) throws SftpException {
+        channel.rm(remoteFilePath);
+    }
+
+    // Ошибка, если каталог уже существует: создание каталога атомарно
+    // на любом сервере, поэтому годится для блокировок
+    public void createDirectory(String remotePath) throws SftpException {
+        channel.mkdir(remotePath);
+    }
+
+    public void deleteDirectory(String remotePath) throws SftpException {
+        channel.rmdir(remotePath);
+    }
+
+    public void replaceFile(String remoteFilePath, Upload upload) throws SftpException, IOException {
+        replaceFile(remoteFilePath, upload, () -> true);
+    }
+
+    // Записывает файл целиком под временным именем рядом с remoteFilePath
+    // и переименовывает его на место основного, см. rename: читатели не видят
+    // недописанный файл. Если condition вернул false или запись не удалась,
+    // временный файл удаляется, а основной остается прежним.
+    // Возвращает false, если замену отменил condition
+    public boolean replaceFile(String remoteFilePath, Upload upload, ReplaceCondition condition)
+            throws SftpException, IOException {
+        String tempPath = remoteFilePath + "." + UUID.randomUUID() + ".tmp";
+        boolean renamed = false;
+        try {
+            try (OutputStream outputStream = openUploadStream(tempPath)) {
+                upload.writeTo(outputStream);
+            }
+            if (!condition.test()) {
+                return false;
+            }
+            rename(tempPath, remoteFilePath);
+            renamed = true;
+            return true;
+        } finally {
+            if (!renamed && isConnected()) {
+                try {
+                    deleteFile(tempPath);
+                } catch (SftpException e) {
+                    // Временный файл мог и не создаться
+                }
+            }
+        }
+    }
+
+    public boolean isConnected() {
+        return channel != null && channel.isConnected() && session != null && session.isConnected();
+    }
+
     public void disconnect() {
         if (channel != null && channel.isConnected()) {
             channel.disconnect();
@@ -60,4 +212,96 @@ public class SftpService {
             session.disconnect();
         }
     }
-}
\ No newline at end of file
+
+    // Считает байты передачи; время от открытия до закрытия потока
+    // записывается в гистограмму как одна передача
+    private static final class CountingInputStream extends FilterInputStream {
+        private final LatencyHistogram transfers;
+        private final LongAdder bytes;
+        private final long startTime = System.nanoTime();
+        private boolean closed;
+
+        CountingInputStream(InputStream inputStream, LatencyHistogram transfers, LongAdder bytes) {
+            super(inputStream);
+            this.transfers = transfers;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                bytes.increment();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                bytes.add(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(count);
+            bytes.add(skipped);
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (!closed) {
+                    closed = true;
+                    transfers.recordSince(startTime);
+                }
+            }
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private final LatencyHistogram transfers;
+        private final LongAdder bytes;
+        private final long startTime = System.nanoTime();
+        private boolean closed;
+
+        CountingOutputStream(OutputStream outputStream, LatencyHistogram transfers, LongAdder bytes) {
+            super(outputStream);
+            this.transfers = transfers;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            out.write(value);
+            bytes.increment();
+        }
+
+        // FilterOutputStream по умолчанию пишет массив по одному байту
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            bytes.add(length);
+        }
+
+        // Повторное закрытие ничего не делает: поток может закрыть и обертка, и владелец
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                transfers.recordSince(startTime);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.example.services;
+
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import org.example.dto.RecordChange;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Отложенная запись изменений на сервер. Изменения применяются к данным
+// сразу, а выгрузка выполняется пачкой: по числу накопленных изменений,
+// по таймеру или по явной команде. Все изменения данных идут через
+// эту очередь под одной блокировкой, поэтому выгрузка не застает
+// данные в середине правки.
+public class WriteBehindQueue implements AutoCloseable {
+    public static final int DEFAULT_MAX_PENDING = 1;
+
+    private final DomainIpService domainIpService;
+    private final ChangePublisher publisher;
+    private final int maxPending;
+    private final ScheduledExecutorService scheduler;
+
+    private final List<RecordChange> pending = new ArrayList<>();
+    private long publishedVersion;
+
+    // flushIntervalSeconds = 0 отключает выгрузку по таймеру
+    public WriteBehindQueue(DomainIpService domainIpService, ChangePublisher publisher,
+                            int maxPending, long flushIntervalSeconds) {
+        this.domainIpService = domainIpService;
+        this.publisher = publisher;
+        this.maxPending = maxPending;
+        this.publishedVersion = domainIpService.getVersion();
+
+        if (flushIntervalSeconds > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "write-behind-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::flushInBackground,
+                    flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    // Применяет изменение к данным и ставит его в очередь.
+    // Возвращает true, если накоплено достаточно изменений для выгрузки.
+    public synchronized boolean apply(RecordChange change) throws Exception {
+        domainIpService.applyChange(change);
+        pending.add(change);
+        return pending.size() >= maxPending;
+    }
+
+    // Возвращает false, если выгружать было нечего.
+    // При ошибке изменения остаются в очереди до следующей попытки.
+    public synchronized boolean flush() throws SftpException, IOException {
+        long version = domainIpService.getVersion();
+        if (version == publishedVersion) {
+            pending.clear();
+            return false;
+        }
+
+        publisher.publish(new ArrayList<>(pending));
+        pending.clear();
+        // При конфликте выгрузка сама подменяет данные новой версией с сервера
+        publishedVersion = domainIpService.getVersion();
+        return true;
+    }
+
+    // Подменяет данные версией, загруженной с сервера, с заново примененными
+    // невыгруженными изменениями. Изменения, которые больше не применимы
+    // (например, запись уже удалена на сервере), отбрасываются.
+    // publishCount - значение getPublishCount до начала загрузки: если с тех пор
+    // прошла наша выгрузка, fresh старше файла на сервере и не применяется.
+    // Возвращает число отброшенных изменений или -1, если данные не подменены.
+    public synchronized int rebase(DomainIpService fresh, SftpATTRS remoteAttrs, long publishCount) {
+        if (publisher.getPublishCount() != publishCount) {
+            return -1;
+        }
+
+        // Изменения применяются к fresh до подмены: в обычном режиме текущие
+        // данные читаются из консоли без блокировки и не должны меняться на месте
+        boolean[] rejected = new boolean[pending.size()];
+        if (!pending.isEmpty()) {
+            fresh.applyChanges(pending, (index, e) -> rejected[index] = true);
+        }
+        domainIpService.replaceData(fresh);
+        publisher.setRemoteAttributes(remoteAttrs);
+
+        List<RecordChange> remaining = new ArrayList<>();
+        for (int i = 0; i < pending.size(); i++) {
+            if (!rejected[i]) {
+                remaining.add(pending.get(i));
+            }
+        }
+        int dropped = pending.size() - remaining.size();
+        pending.clear();
+        pending.addAll(remaining);
+        // Пока есть невыгруженные изменения, publishedVersion не сдвигается, и flush их выгрузит
+        if (pending.isEmpty()) {
+            publishedVersion = domainIpService.getVersion();
+        }
+        return dropped;
+    }
+
+    public long getPublishCount() {
+        return publisher.getPublishCount();
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private void flushInBackground() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("Ошибка фоновой выгрузки изменений: " + e.getMessage());
+        }
+    }
+
+    // Останавливает таймер и выгружает оставшиеся изменения. Прерывание во время
+    // ожидания фоновой выгрузки не отменяет итоговую: флаг восстанавливается после нее
+    @Override
+    public void close() throws SftpException, IOException {
+        boolean interrupted = false;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            flush();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.example;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+// parseIPv4 должен принимать ровно то же, что прежнее регулярное выражение,
+// и возвращать тот же адрес, что разбор по группам
+public class ValidatorTest {
+    // Прежняя проверка IPv4
+    private static final Pattern IPV4_PATTERN = Pattern.compile(
+            "^((25[0-5]|2[0-4]\\d|[01]?\\d\\d?)\\.){3}(25[0-5]|2[0-4]\\d|[01]?\\d\\d?)$"
+    );
+    private static final int GENERATED_INPUTS = 2_000_000;
+    // Символы для случайных строк: цифры, точки, пробелы и цифра не из ASCII
+    private static final String ALPHABET = "0123456789.....25x \n\t-+٣";
+
+    @DataProvider
+    public Object[][] addresses() {
+        return new Object[][]{
+                {"0.0.0.0", 0L},
+                {"255.255.255.255", 0xFFFFFFFFL},
+                {"192.168.1.10", 0xC0A8010AL},
+                {"010.001.000.009", 0x0A010009L},
+                {"256.1.1.1", -1L},
+                {"1.1.1", -1L},
+                {"1.1.1.1.", -1L},
+                {".1.1.1.1", -1L},
+                {"1..1.1", -1L},
+                {"1.1.1.0001", -1L},
+                {" 1.1.1.1", -1L},
+                {"1.1.1.1\n", -1L},
+                {"1.1.1.٣", -1L},
+                {"", -1L},
+                {null, -1L}
+        };
+    }
+
+    @Test(dataProvider = "addresses")
+    public void parsesKnownAddresses(String ip, long expected) {
+        assertEquals(Validator.parseIPv4(ip), expected, String.valueOf(ip));
+        assertEquals(Validator.isNotValidIPv4(ip), expected < 0, String.valueOf(ip));
+        if (expected >= 0) {
+            assertEquals(Validator.parseIPv4(Validator.formatIPv4((int) expected)), expected, ip);
+        }
+    }
+
+    @Test
+    public void formatsAddressesWithoutLeadingZeros() {
+        assertEquals(Validator.formatIPv4(0), "0.0.0.0");
+        assertEquals(Validator.formatIPv4(0x0A010009), "10.1.0.9");
+        assertEquals(Validator.formatIPv4(0xC0A8010A), "192.168.1.10");
+        assertEquals(Validator.formatIPv4(0xFFFFFFFF), "255.255.255.255");
+    }
+
+    @Test
+    public void matchesRegexOnGeneratedInputs() {
+        Random random = new Random(42);
+        int valid = 0;
+        for (int i = 0; i < GENERATED_INPUTS; i++) {
+            String ip = random.nextBoolean() ? octets(random) : noise(random);
+            long parsed = Validator.parseIPv4(ip);
+            boolean matches = IPV4_PATTERN.matcher(ip).matches();
+            assertEquals(parsed >= 0, matches, "'" + ip + "'");
+            if (matches) {
+                valid++;
+                assertEquals(parsed, pack(ip), "'" + ip + "'");
+            }
+        }
+        // Генератор должен давать заметную долю корректных адресов
+        assertTrue(valid > GENERATED_INPUTS / 100, "корректных адресов: " + valid);
+    }
+
+    // Четыре группы, похожие на октеты: значения за пределами 255, ведущие нули,
+    // двойные точки и лишний символ в конце
+    private static String octets(Random random) {
+        StringBuilder ip = new StringBuilder();
+        for (int k = 0; k < 4; k++) {
+            if (k > 0) {
+                ip.append(random.nextInt(20) == 0 ? ".." : ".");
+            }
+            ip.append(random.nextInt(random.nextBoolean() ? 300 : 1000));
+            if (random.nextInt(30) == 0) {
+                ip.insert(random.nextInt(ip.length() + 1), '0');
+            }
+        }
+        if (random.nextInt(20) == 0) {
+            ip.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return ip.toString();
+    }
+
+    private static String noise(Random random) {
+        StringBuilder ip = new StringBuilder();
+        int length = random.nextInt(18);
+        for (int k = 0; k < length; k++) {
+            ip.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return ip.toString();
+    }
+
+    private static long pack(String ip) {
+        long address = 0;
+        for (String octet : ip.split("\\.")) {
+            address = (address << 8) | Integer.parseInt(octet);
+        }
+        return address;
+    }
+}
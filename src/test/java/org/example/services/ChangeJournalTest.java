@@ -0,0 +1,214 @@
+package org.example.services;
+
+import org.example.dto.RecordChange;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class ChangeJournalTest {
+    private static final String SNAPSHOT = "/upload/domains.json";
+    private static final String LOG = SNAPSHOT + ".log";
+    private static final String COMPACTING = LOG + ".compacting";
+    private static final String COMPACT_LOCK = LOG + ".compact.lock";
+    private static final String APPEND_LOCK = LOG + ".append.lock";
+
+    private EmbeddedSftpServer server;
+    private final List<SftpService> clients = new ArrayList<>();
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = EmbeddedSftpServer.start();
+        Files.write(server.file(SNAPSHOT),
+                "[{\"domain\": \"a.com\", \"ip\": \"10.0.0.1\"}]".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        for (SftpService client : clients) {
+            client.disconnect();
+        }
+        clients.clear();
+        server.close();
+    }
+
+    private ChangeJournal journal(int maxEntries) throws Exception {
+        SftpService client = new SftpService("localhost", server.getPort(),
+                EmbeddedSftpServer.USERNAME, EmbeddedSftpServer.PASSWORD);
+        client.connect(10000);
+        clients.add(client);
+        return new ChangeJournal(client, SNAPSHOT, maxEntries, ChangeJournal.DEFAULT_MAX_AGE_MINUTES);
+    }
+
+    // Данные так, как их видит новый клиент: файл плюс журнал
+    private DomainIpService load() throws Exception {
+        DomainIpService domainIpService = new DomainIpService();
+        try (InputStream inputStream = Files.newInputStream(server.file(SNAPSHOT))) {
+            domainIpService.loadData(inputStream);
+        }
+        assertEquals(journal(ChangeJournal.DEFAULT_MAX_ENTRIES).replay(domainIpService), 0);
+        return domainIpService;
+    }
+
+    @Test
+    public void replaysAppendedChangesOverSnapshot() throws Exception {
+        ChangeJournal journal = journal(ChangeJournal.DEFAULT_MAX_ENTRIES);
+        journal.append(Arrays.asList(RecordChange.add("b\tc.com", "10.0.0.2"), RecordChange.removeByDomain("a.com")));
+        journal.append(Collections.singletonList(RecordChange.add("d.com", "10.0.0.4")));
+        assertEquals(journal.getEntryCount(), 3);
+        assertFalse(journal.needsCompaction());
+
+        DomainIpService loaded = load();
+        assertEquals(loaded.getRecordCount(), 2);
+        assertNull(loaded.findIpByDomain("a.com"));
+        assertEquals(loaded.findIpByDomain("b\tc.com"), "10.0.0.2");
+        assertEquals(loaded.findIpByDomain("d.com"), "10.0.0.4");
+    }
+
+    @Test
+    public void compactFoldsLogIntoSnapshot() throws Exception {
+        ChangeJournal journal = journal(2);
+        journal.append(Arrays.asList(RecordChange.add("b.com", "10.0.0.2"), RecordChange.removeByIp("10.0.0.1")));
+        assertTrue(journal.needsCompaction());
+
+        assertTrue(journal.compact());
+        assertEquals(journal.getEntryCount(), 0);
+        assertFalse(Files.exists(server.file(LOG)));
+        assertFalse(Files.exists(server.file(COMPACTING)));
+        assertFalse(Files.exists(server.file(COMPACT_LOCK)));
+        assertFalse(Files.exists(server.file(APPEND_LOCK)));
+
+        DomainIpService snapshot = new DomainIpService();
+        try (InputStream inputStream = Files.newInputStream(server.file(SNAPSHOT))) {
+            snapshot.loadData(inputStream);
+        }
+        assertEquals(snapshot.getRecordCount(), 1);
+        assertEquals(snapshot.findIpByDomain("b.com"), "10.0.0.2");
+    }
+
+    @Test
+    public void resumesInterruptedCompaction() throws Exception {
+        ChangeJournal journal = journal(ChangeJournal.DEFAULT_MAX_ENTRIES);
+        journal.append(Collections.singletonList(RecordChange.add("b.com", "10.0.0.2")));
+        // Сворачивание прервалось после переименования журнала
+        Files.move(server.file(LOG), server.file(COMPACTING));
+        journal.append(Arrays.asList(RecordChange.removeByDomain("b.com"), RecordChange.add("c.com", "10.0.0.3")));
+
+        DomainIpService replayed = load();
+        assertEquals(replayed.getRecordCount(), 2);
+        assertNull(replayed.findIpByDomain("b.com"));
+        assertEquals(replayed.findIpByDomain("c.com"), "10.0.0.3");
+
+        // Сворачивает отложенный журнал, затем текущий
+        assertTrue(journal.compact());
+        assertFalse(Files.exists(server.file(COMPACTING)));
+        assertFalse(Files.exists(server.file(LOG)));
+        DomainIpService loaded = load();
+        assertEquals(loaded.getRecordCount(), 2);
+        assertNull(loaded.findIpByDomain("b.com"));
+        assertEquals(loaded.findIpByDomain("c.com"), "10.0.0.3");
+    }
+
+    @Test
+    public void skipsCompactionWhileAnotherClientHoldsLock() throws Exception {
+        ChangeJournal journal = journal(1);
+        journal.append(Collections.singletonList(RecordChange.add("b.com", "10.0.0.2")));
+        Files.createDirectory(server.file(COMPACT_LOCK));
+
+        assertFalse(journal.compact());
+        assertTrue(Files.exists(server.file(LOG)));
+        assertTrue(Files.exists(server.file(COMPACT_LOCK)));
+        assertTrue(journal.needsCompaction());
+    }
+
+    @Test
+    public void breaksLockOfInterruptedCompaction() throws Exception {
+        ChangeJournal journal = journal(1);
+        journal.append(Collections.singletonList(RecordChange.add("b.com", "10.0.0.2")));
+        Files.createDirectory(server.file(COMPACT_LOCK));
+        Files.write(server.file(COMPACT_LOCK + "/owner"), "crashed".getBytes(StandardCharsets.UTF_8));
+        FileTime stale = FileTime.fromMillis(System.currentTimeMillis()
+                - TimeUnit.MINUTES.toMillis(ChangeJournal.STALE_COMPACT_LOCK_MINUTES + 1));
+        Files.setLastModifiedTime(server.file(COMPACT_LOCK), stale);
+
+        assertTrue(journal.compact());
+        assertFalse(Files.exists(server.file(COMPACT_LOCK)));
+        assertFalse(Files.exists(server.file(APPEND_LOCK)));
+        assertFalse(Files.exists(server.file(LOG)));
+        try (java.util.stream.Stream<java.nio.file.Path> files = Files.list(server.file("/upload"))) {
+            assertEquals(files.count(), 1L);
+        }
+    }
+
+    @Test
+    public void breaksLockOfInterruptedAppend() throws Exception {
+        Files.createDirectory(server.file(APPEND_LOCK));
+        Files.setLastModifiedTime(server.file(APPEND_LOCK), FileTime.fromMillis(System.currentTimeMillis()
+                - TimeUnit.SECONDS.toMillis(ChangeJournal.STALE_APPEND_LOCK_SECONDS + 1)));
+
+        journal(ChangeJournal.DEFAULT_MAX_ENTRIES).append(
+                Collections.singletonList(RecordChange.add("b.com", "10.0.0.2")));
+        assertFalse(Files.exists(server.file(APPEND_LOCK)));
+        assertEquals(load().findIpByDomain("b.com"), "10.0.0.2");
+    }
+
+    // Оба клиента дописывают и сворачивают журнал одновременно: ни одно изменение не теряется
+    @Test(timeOut = 120000)
+    public void concurrentCompactionsKeepAllEntries() throws Exception {
+        int perClient = 40;
+        List<ChangeJournal> journals = Arrays.asList(journal(1), journal(1));
+        ExecutorService executor = Executors.newFixedThreadPool(journals.size());
+        try {
+            List<Future<Integer>> tasks = new ArrayList<>();
+            for (int c = 0; c < journals.size(); c++) {
+                int client = c;
+                ChangeJournal journal = journals.get(c);
+                tasks.add(executor.submit(() -> {
+                    int compactions = 0;
+                    for (int i = 0; i < perClient; i++) {
+                        journal.append(Collections.singletonList(
+                                RecordChange.add("c" + client + "-" + i + ".com", "10.1." + client + "." + i)));
+                        if (journal.compact()) {
+                            compactions++;
+                        }
+                    }
+                    return compactions;
+                }));
+            }
+            int compactions = 0;
+            for (Future<Integer> task : tasks) {
+                compactions += task.get();
+            }
+            assertTrue(compactions > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        DomainIpService loaded = load();
+        assertEquals(loaded.getRecordCount(), 1 + journals.size() * perClient);
+        for (int c = 0; c < journals.size(); c++) {
+            for (int i = 0; i < perClient; i++) {
+                assertEquals(loaded.findIpByDomain("c" + c + "-" + i + ".com"), "10.1." + c + "." + i);
+            }
+        }
+        assertFalse(Files.exists(server.file(COMPACT_LOCK)));
+        assertFalse(Files.exists(server.file(APPEND_LOCK)));
+    }
+}
@@ -0,0 +1,138 @@
+package org.example.services;
+
+import org.example.dto.RecordChange;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class ChangePublisherTest {
+    private static final String SNAPSHOT = "/upload/domains.json";
+
+    private EmbeddedSftpServer server;
+    private SftpService sftpService;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = EmbeddedSftpServer.start();
+        sftpService = new SftpService("localhost", server.getPort(),
+                EmbeddedSftpServer.USERNAME, EmbeddedSftpServer.PASSWORD);
+        sftpService.connect(10000);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        sftpService.disconnect();
+        server.close();
+    }
+
+    private void writeSnapshot(String json) throws Exception {
+        Files.write(server.file(SNAPSHOT), json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private DomainIpService readSnapshot() throws Exception {
+        DomainIpService snapshot = new DomainIpService();
+        try (InputStream inputStream = Files.newInputStream(server.file(SNAPSHOT))) {
+            snapshot.loadData(inputStream);
+        }
+        return snapshot;
+    }
+
+    // Изменения уже в журнале: ошибка сворачивания не должна возвращать их в очередь
+    @Test
+    public void journalPublishSucceedsWhenCompactionFails() throws Exception {
+        ChangeJournal journal = new ChangeJournal(sftpService, SNAPSHOT, 1, ChangeJournal.DEFAULT_MAX_AGE_MINUTES);
+        ChangePublisher publisher = new ChangePublisher(sftpService, new DomainIpService(), SNAPSHOT, journal);
+
+        // Файла еще нет, сворачивание не может его скачать
+        publisher.publish(Collections.singletonList(RecordChange.add("a.com", "10.0.0.1")));
+        publisher.publish(Collections.singletonList(RecordChange.add("b.com", "10.0.0.2")));
+        assertEquals(publisher.getPublishCount(), 2);
+        assertTrue(journal.needsCompaction());
+
+        // Следующая выгрузка сворачивает все, что накопилось
+        writeSnapshot("[]");
+        publisher.publish(Collections.singletonList(RecordChange.removeByDomain("a.com")));
+        assertEquals(publisher.getPublishCount(), 3);
+        assertFalse(journal.needsCompaction());
+
+        DomainIpService snapshot = readSnapshot();
+        assertEquals(snapshot.getRecordCount(), 1);
+        assertEquals(snapshot.findIpByDomain("b.com"), "10.0.0.2");
+    }
+
+    private static DomainIpService load(String json) throws Exception {
+        DomainIpService domainIpService = new DomainIpService();
+        domainIpService.loadData(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        return domainIpService;
+    }
+
+    // Файл не менялся с загрузки: он заменяется нашими данными без повторного скачивания
+    @Test
+    public void fullUploadReplacesUnchangedFile() throws Exception {
+        String json = "[{\"domain\": \"a.com\", \"ip\": \"10.0.0.1\"}]";
+        writeSnapshot(json);
+        DomainIpService domainIpService = load(json);
+        ChangePublisher publisher = new ChangePublisher(sftpService, domainIpService, SNAPSHOT, null);
+        publisher.setRemoteAttributes(sftpService.stat(SNAPSHOT));
+
+        RecordChange change = RecordChange.add("b.com", "10.0.0.2");
+        domainIpService.applyChange(change);
+        publisher.publish(Collections.singletonList(change));
+        // Версия после нашей выгрузки становится новой базой: вторая выгрузка не видит конфликта
+        change = RecordChange.removeByDomain("a.com");
+        domainIpService.applyChange(change);
+        publisher.publish(Collections.singletonList(change));
+
+        assertEquals(publisher.getPublishCount(), 2);
+        assertEquals(readSnapshot().convertDataToJson(), domainIpService.convertDataToJson());
+        assertEquals(domainIpService.getRecordCount(), 1);
+    }
+
+    // Файл изменил другой клиент: наши изменения применяются поверх его версии,
+    // неприменимые отбрасываются, и выгрузка повторяется
+    @Test
+    public void fullUploadRebasesOnConcurrentChange() throws Exception {
+        String json = "[{\"domain\": \"a.com\", \"ip\": \"10.0.0.1\"}," +
+                "{\"domain\": \"b.com\", \"ip\": \"10.0.0.2\"}]";
+        writeSnapshot(json);
+        DomainIpService domainIpService = load(json);
+        ChangePublisher publisher = new ChangePublisher(sftpService, domainIpService, SNAPSHOT, null);
+        publisher.setRemoteAttributes(sftpService.stat(SNAPSHOT));
+
+        // Другой клиент удалил b.com и добавил www.c.com. Версия сверяется по размеру
+        // и времени изменения (с точностью до секунды), поэтому меняются оба
+        writeSnapshot("[{\"domain\": \"a.com\", \"ip\": \"10.0.0.1\"}," +
+                "{\"domain\": \"www.c.com\", \"ip\": \"10.0.0.3\"}]");
+        Files.setLastModifiedTime(server.file(SNAPSHOT),
+                FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+        List<RecordChange> changes = Arrays.asList(
+                RecordChange.add("d.com", "10.0.0.4"),
+                RecordChange.removeByDomain("b.com"));
+        domainIpService.applyChanges(changes, (index, e) -> { });
+        publisher.publish(changes);
+
+        assertEquals(publisher.getPublishCount(), 1);
+        DomainIpService snapshot = readSnapshot();
+        assertEquals(snapshot.getRecordCount(), 3);
+        assertEquals(snapshot.findIpByDomain("www.c.com"), "10.0.0.3");
+        assertEquals(snapshot.findIpByDomain("d.com"), "10.0.0.4");
+        assertNull(snapshot.findIpByDomain("b.com"));
+        // Данные в памяти подменены объединенной версией
+        assertEquals(domainIpService.convertDataToJson(), snapshot.convertDataToJson());
+    }
+}
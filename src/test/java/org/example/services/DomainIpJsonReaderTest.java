@@ -0,0 +1,143 @@
+package org.example.services;
+
+import org.example.dto.DomainIpRecord;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+public class DomainIpJsonReaderTest {
+    private static List<DomainIpRecord> readAll(String json) throws IOException {
+        List<DomainIpRecord> records = new ArrayList<>();
+        try (DomainIpJsonReader reader = new DomainIpJsonReader(new StringReader(json))) {
+            DomainIpRecord record;
+            while ((record = reader.readRecord()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static String toJson(List<DomainIpRecord> records) throws IOException {
+        StringWriter json = new StringWriter();
+        DomainIpJsonWriter writer = new DomainIpJsonWriter(json);
+        writer.writeAll(records);
+        writer.flush();
+        return json.toString();
+    }
+
+    @DataProvider
+    public Object[][] truncated() {
+        return new Object[][]{
+                {"["},
+                {"[{"},
+                {"[ \n"},
+                {"[{\"domain\""},
+                {"[{\"domain\":"},
+                {"[{\"domain\": \"a.com"},
+                {"[{\"domain\": \"a.com\""},
+                {"[{\"domain\": \"a.com\","},
+                {"[{\"domain\": null"},
+                {"[{\"domain\": \"a.com\", \"ip\": \"10.0.0.1\"}"},
+                {"[{\"domain\": \"a.com\", \"ip\": \"10.0.0.1\"},"},
+                {"[{\"x\": [1, {\"y\": 2"},
+                {"[{\"domain\": \"a\\u00"}
+        };
+    }
+
+    // Обрезанный файл (недокачанный или поврежденный кэш) - IOException, а не сбой
+    @Test(dataProvider = "truncated")
+    public void rejectsTruncatedInput(String json) {
+        try {
+            readAll(json);
+            fail("Разобран обрезанный JSON: " + json);
+        } catch (IOException e) {
+            // ожидаемо
+        }
+
+        DomainIpService domainIpService = new DomainIpService();
+        try {
+            domainIpService.loadData(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+            fail("Загружен обрезанный JSON: " + json);
+        } catch (IOException e) {
+            // ожидаемо
+        }
+    }
+
+    @Test
+    public void readsEmptyInput() throws IOException {
+        assertEquals(readAll("").size(), 0);
+        assertEquals(readAll(" [ ] ").size(), 0);
+    }
+
+    // Поле не строкой - как отсутствующее поле: объект пропускается, остальные читаются
+    @Test
+    public void skipsObjectsWithNonStringFields() throws IOException {
+        List<DomainIpRecord> records = readAll("[" +
+                "{\"domain\": null, \"ip\": \"10.0.0.1\"}," +
+                "{\"domain\": \"a.com\", \"ip\": 123}," +
+                "{\"ip\": true, \"domain\": \"c.com\"}," +
+                "{\"domain\": {\"name\": \"d.com\"}, \"ip\": \"10.0.0.4\"}," +
+                "{\"domain\": \"e.com\", \"ip\": [\"10.0.0.5\"]}," +
+                "{\"domain\": \"b.com\", \"extra\": {\"n\": [1, \"]}\"]}, \"ip\": \"10.0.0.2\"}," +
+                "{}," +
+                "{\"domain\": \"f.com\", \"ip\": null}" +
+                "]");
+        assertEquals(records.size(), 1);
+        assertEquals(records.get(0).getDomain(), "b.com");
+        assertEquals(records.get(0).getIp(), "10.0.0.2");
+
+        DomainIpService domainIpService = new DomainIpService();
+        domainIpService.loadData(new ByteArrayInputStream(
+                "[{\"domain\": \"a.com\", \"ip\": null}, {\"domain\": \"b.com\", \"ip\": \"10.0.0.2\"}]"
+                        .getBytes(StandardCharsets.UTF_8)));
+        assertEquals(domainIpService.getRecordCount(), 1);
+        assertNull(domainIpService.findIpByDomain("a.com"));
+    }
+
+    @Test
+    public void roundTripsEscapedStrings() throws IOException {
+        List<DomainIpRecord> records = Arrays.asList(
+                new DomainIpRecord("quote\"back\\slash/.com", "10.0.0.1"),
+                new DomainIpRecord("tab\tnew\nline\rret\bback\fform.com", "10.0.0.2"),
+                new DomainIpRecord("control\u0001\u001f.com", "10.0.0.3"),
+                new DomainIpRecord("юникод.рф", "10.0.0.4"));
+        String json = toJson(records);
+
+        List<DomainIpRecord> read = readAll(json);
+        assertEquals(read.size(), records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(read.get(i).getDomain(), records.get(i).getDomain());
+            assertEquals(read.get(i).getIp(), records.get(i).getIp());
+        }
+        assertEquals(readAll("[{\"domain\": \"\\u0041\\u00e9.com\", \"ip\": \"10.0.0.1\"}]").get(0).getDomain(),
+                "Aé.com");
+        assertEquals(toJson(new ArrayList<>()), "[]");
+    }
+
+    // Записей больше, чем помещается в один блок чтения
+    @Test
+    public void readsAcrossBufferBoundaries() throws IOException {
+        List<DomainIpRecord> records = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            records.add(new DomainIpRecord("host" + i + ".example.com", "10.0." + (i >>> 8) + "." + (i & 0xFF)));
+        }
+        List<DomainIpRecord> read = readAll(toJson(records).replace("\n", "\n \t"));
+        assertEquals(read.size(), records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(read.get(i).getDomain(), records.get(i).getDomain());
+            assertEquals(read.get(i).getIp(), records.get(i).getIp());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.example.services;
+
+import org.example.dto.DomainIpRecord;
+import org.example.dto.RecordChange;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertTrue;
+
+// Нагрузочная проверка потокобезопасного режима: читатели непрерывно ищут
+// записи, обходят отсортированный список и подсеть, пока писатель добавляет
+// и удаляет пачки записей, а загрузчик подменяет данные целиком.
+// Любое расхождение или исключение в читателе проваливает тест.
+public class DomainIpServiceConcurrencyTest {
+    private static final int SIZE = 10000;
+    private static final long DURATION_MILLIS = 3000;
+    // Адреса 10.0.0.0 - 10.0.0.255 есть в исходных данных и не удаляются
+    private static final String SUBNET = "10.0.0.0/24";
+    // Записей в пачке писателя больше порога слияния Ipv4Index (MIN_PENDING).
+    // Копия State начинает со слитого индекса, поэтому буфер, слияние и удаленные
+    // позиции задействуются только внутри одной большой пачки
+    private static final int EXTRA = 1500;
+
+    @Test(timeOut = 60000)
+    public void readersSeeConsistentSnapshotsWhileWriting() throws Exception {
+        String json = json();
+        DomainIpService domainIpService = new DomainIpService(true);
+        domainIpService.loadData(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        int readers = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(readers + 2);
+        List<Future<Long>> tasks = new ArrayList<>();
+        try {
+            for (int r = 0; r < readers; r++) {
+                tasks.add(executor.submit(() -> read(domainIpService, running)));
+            }
+
+            tasks.add(executor.submit(() -> {
+                long writes = 0;
+                while (running.get()) {
+                    // Перезагрузка между пачками стирает новые записи, такие отказы ожидаемы
+                    writes += domainIpService.applyChanges(addExtra(), (index, e) -> { });
+                    writes += domainIpService.applyChanges(removeExtra(), (index, e) -> { });
+                }
+                return writes;
+            }));
+
+            tasks.add(executor.submit(() -> {
+                long loads = 0;
+                while (running.get()) {
+                    domainIpService.loadData(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+                    loads++;
+                    Thread.sleep(100);
+                }
+                return loads;
+            }));
+
+            Thread.sleep(DURATION_MILLIS);
+        } finally {
+            running.set(false);
+            executor.shutdown();
+        }
+
+        for (Future<Long> task : tasks) {
+            // Исключение читателя или писателя выходит здесь как ExecutionException
+            assertTrue(task.get(30, TimeUnit.SECONDS) > 0);
+        }
+    }
+
+    private static long read(DomainIpService domainIpService, AtomicBoolean running) {
+        long lastVersion = -1;
+        long count = 0;
+        while (running.get()) {
+            int i = ThreadLocalRandom.current().nextInt(SIZE);
+            // Исходные записи не удаляются, поэтому всегда должны находиться
+            check(ip(i).equals(domainIpService.findIpByDomain(domain(i))), "не найден домен " + domain(i));
+            check(domain(i).equals(domainIpService.findDomainByIp(ip(i))), "не найден IP " + ip(i));
+
+            long version = domainIpService.getVersion();
+            check(version >= lastVersion, "версия уменьшилась: " + lastVersion + " -> " + version);
+            lastVersion = version;
+
+            if ((count & 1023) == 0) {
+                List<DomainIpRecord> records = domainIpService.getAllRecords();
+                check(records.size() >= SIZE && records.size() <= SIZE + EXTRA,
+                        "неожиданное число записей: " + records.size());
+                for (int k = 1; k < records.size(); k++) {
+                    check(records.get(k - 1).getDomain().compareTo(records.get(k).getDomain()) <= 0,
+                            "нарушен порядок сортировки");
+                }
+
+                List<String> subnet = domainIpService.findRecordsInSubnet(SUBNET)
+                        .map(DomainIpRecord::getIp)
+                        .collect(Collectors.toList());
+                check(subnet.size() == 256, "в подсети " + SUBNET + " записей: " + subnet.size());
+                for (int k = 0; k < subnet.size(); k++) {
+                    check(subnet.get(k).equals(ip(k)), "нарушен порядок адресов в подсети");
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    // Новые адреса лежат по обе стороны от исходных и в пачке идут не по порядку
+    private static List<RecordChange> addExtra() {
+        List<RecordChange> changes = new ArrayList<>();
+        for (int k = EXTRA - 1; k >= 0; k--) {
+            changes.add(RecordChange.add(extraDomain(k), extraIp(k)));
+        }
+        return changes;
+    }
+
+    // Каждый третий адрес после удаления занимается снова и снова удаляется:
+    // до слияния он попадает на свое прежнее, уже пустое место
+    private static List<RecordChange> removeExtra() {
+        List<RecordChange> changes = new ArrayList<>();
+        for (int k = 0; k < EXTRA; k++) {
+            changes.add(RecordChange.removeByIp(extraIp(k)));
+            if (k % 3 == 0) {
+                changes.add(RecordChange.add("again-" + extraDomain(k), extraIp(k)));
+                changes.add(RecordChange.removeByDomain("again-" + extraDomain(k)));
+            }
+        }
+        return changes;
+    }
+
+    private static String extraDomain(int k) {
+        return "extra" + k + ".example.org";
+    }
+
+    // 9.0.x.x для четных, 10.1.x.x для нечетных
+    private static String extraIp(int k) {
+        return (k % 2 == 0 ? "9.0." : "10.1.") + (k >>> 8) + "." + (k & 0xFF);
+    }
+
+    private static String domain(int i) {
+        return "host" + i + ".example.com";
+    }
+
+    // 10.0.0.0 + i
+    private static String ip(int i) {
+        return "10.0." + (i >>> 8) + "." + (i & 0xFF);
+    }
+
+    private static String json() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < SIZE; i++) {
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("{\"domain\": \"").append(domain(i))
+                    .append("\", \"ip\": \"").append(ip(i)).append("\"}");
+        }
+        return json.append("\n]").toString();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.example.services;
+
+import org.example.dto.ConflictPolicy;
+import org.example.dto.DomainIpRecord;
+import org.example.dto.ImportReport;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class DomainIpServiceTest {
+    private static final String EXISTING = "[" +
+            "{\"domain\": \"a.com\", \"ip\": \"10.0.0.1\"}," +
+            "{\"domain\": \"b.com\", \"ip\": \"10.0.0.2\"}," +
+            "{\"domain\": \"c.com\", \"ip\": \"10.0.0.3\"}]";
+
+    // Каждый вид записи импорта: совпадающая, новая, два конфликта с существующими
+    // (по домену и по IP), некорректная, повтор и конфликт внутри пакета
+    private static final List<DomainIpRecord> INCOMING = Arrays.asList(
+            new DomainIpRecord("a.com", "10.0.0.1"),
+            new DomainIpRecord("d.com", "10.0.0.4"),
+            new DomainIpRecord("b.com", "10.0.0.9"),
+            new DomainIpRecord("e.com", "10.0.0.3"),
+            new DomainIpRecord("bad.com", "300.0.0.1"),
+            new DomainIpRecord("d.com", "10.0.0.4"),
+            new DomainIpRecord("f.com", "10.0.0.4"));
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void loadKeepsFirstRecordOfDuplicatesAndReportsTheRest() throws IOException {
+        DomainIpService domainIpService = new DomainIpService();
+        int skipped = domainIpService.loadData(stream("[" +
+                "{\"domain\": \"a.com\", \"ip\": \"10.0.0.1\"}," +
+                "{\"domain\": \"b.com\", \"ip\": \"10.0.0.1\"}," +
+                "{\"domain\": \"A.com\", \"ip\": \"10.0.0.2\"}," +
+                "{\"domain\": \"c.com\", \"ip\": \"10.0.0.3\"}]"));
+
+        assertEquals(skipped, 2);
+        assertEquals(domainIpService.getRecordCount(), 2);
+        assertEquals(domainIpService.findDomainByIp("10.0.0.1"), "a.com");
+        assertNull(domainIpService.findIpByDomain("b.com"));
+        assertNull(domainIpService.findDomainByIp("10.0.0.2"));
+        assertEquals(domainIpService.findIpByDomain("c.com"), "10.0.0.3");
+    }
+
+    @Test
+    public void loadWithoutDuplicatesSkipsNothing() throws IOException {
+        DomainIpService domainIpService = new DomainIpService();
+        assertEquals(domainIpService.loadData(stream("[" +
+                "{\"domain\": \"b.com\", \"ip\": \"10.0.0.2\"}," +
+                "{\"domain\": \"a.com\", \"ip\": \"10.0.0.1\"}]")), 0);
+
+        List<DomainIpRecord> records = domainIpService.getAllRecords();
+        assertEquals(records.size(), 2);
+        assertEquals(records.get(0).getDomain(), "a.com");
+        assertEquals(records.get(1).getDomain(), "b.com");
+    }
+
+    @DataProvider
+    public Object[][] blankDomains() {
+        return new Object[][]{{null}, {""}, {"  "}};
+    }
+
+    // Пустой домен отклоняется до обращения к индексам, данные не меняются
+    @Test(dataProvider = "blankDomains")
+    public void addRejectsBlankDomain(String domain) throws Exception {
+        DomainIpService domainIpService = new DomainIpService();
+        domainIpService.addRecord("a.com", "10.0.0.1");
+        try {
+            domainIpService.addRecord(domain, "10.0.0.2");
+            fail("Пустой домен принят");
+        } catch (IllegalArgumentException e) {
+            assertEquals(e.getMessage(), "Домен не может быть пустым");
+        }
+        assertEquals(domainIpService.getRecordCount(), 1);
+        assertNull(domainIpService.findDomainByIp("10.0.0.2"));
+    }
+
+    // IP хранится числом и выдается без ведущих нулей, некорректные записи пропускаются
+    @Test
+    public void loadNormalizesAddressesAndSkipsInvalidRecords() throws IOException {
+        DomainIpService domainIpService = new DomainIpService();
+        int skipped = domainIpService.loadData(stream("[" +
+                "{\"domain\": \"a.com\", \"ip\": \"010.000.000.001\"}," +
+                "{\"domain\": \"b.com\", \"ip\": \"10.0.0.256\"}," +
+                "{\"domain\": \" \", \"ip\": \"10.0.0.3\"}]"));
+
+        assertEquals(skipped, 2);
+        assertEquals(domainIpService.getRecordCount(), 1);
+        assertEquals(domainIpService.findIpByDomain("A.com"), "10.0.0.1");
+        assertEquals(domainIpService.findDomainByIp("10.0.0.1"), "a.com");
+    }
+
+    @Test
+    public void snapshotRestoresRecordsAndIndexes() throws Exception {
+        DomainIpService domainIpService = new DomainIpService();
+        domainIpService.loadData(stream("[" +
+                "{\"domain\": \"c.example.com\", \"ip\": \"10.0.0.3\"}," +
+                "{\"domain\": \"A.example.com\", \"ip\": \"10.0.0.1\"}," +
+                "{\"domain\": \"b.example.com\", \"ip\": \"10.0.0.2\"}]"));
+        // Удаленная позиция не должна попасть в снимок
+        domainIpService.removeRecordByDomain("b.example.com");
+        domainIpService.addRecord("d.example.com", "10.0.0.4");
+
+        Path file = Files.createTempFile("snapshot", ".bin");
+        try {
+            domainIpService.saveSnapshot(file);
+            DomainIpService loaded = new DomainIpService();
+            loaded.loadSnapshot(file);
+
+            assertEquals(loaded.convertDataToJson(), domainIpService.convertDataToJson());
+            assertEquals(loaded.findIpByDomain("a.example.com"), "10.0.0.1");
+            assertEquals(loaded.findDomainByIp("10.0.0.4"), "d.example.com");
+            assertEquals(loaded.findRecordsInRange("10.0.0.0", "10.0.0.255")
+                    .map(DomainIpRecord::getDomain).collect(Collectors.toList()),
+                    Arrays.asList("A.example.com", "c.example.com", "d.example.com"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @DataProvider
+    public Object[][] importModes() {
+        return new Object[][]{
+                {ConflictPolicy.REJECT, false}, {ConflictPolicy.REJECT, true},
+                {ConflictPolicy.OVERWRITE, false}, {ConflictPolicy.OVERWRITE, true},
+                {ConflictPolicy.KEEP_EXISTING, false}, {ConflictPolicy.KEEP_EXISTING, true}
+        };
+    }
+
+    @Test(dataProvider = "importModes")
+    public void importAppliesConflictPolicy(ConflictPolicy policy, boolean concurrent) throws IOException {
+        DomainIpService domainIpService = new DomainIpService(concurrent);
+        domainIpService.loadData(stream(EXISTING));
+        long version = domainIpService.getVersion();
+
+        ImportReport report = domainIpService.importRecords(INCOMING, policy);
+
+        assertEquals(report.getTotal(), 7);
+        assertEquals(report.getInvalid(), 1);
+        assertEquals(report.getDuplicates(), 1);
+        // Один конфликт внутри пакета и два с существующими записями
+        assertEquals(report.getConflicts(), 3);
+
+        switch (policy) {
+            case REJECT:
+                assertTrue(report.isAborted());
+                assertTrue(report.getChanges().isEmpty());
+                assertEquals(domainIpService.getVersion(), version);
+                assertEquals(domainIpService.getRecordCount(), 3);
+                return;
+            case OVERWRITE:
+                assertEquals(report.getAdded(), 1);
+                assertEquals(report.getOverwritten(), 2);
+                assertEquals(report.getKeptExisting(), 0);
+                assertEquals(domainIpService.findIpByDomain("b.com"), "10.0.0.9");
+                assertEquals(domainIpService.findDomainByIp("10.0.0.3"), "e.com");
+                assertNull(domainIpService.findIpByDomain("c.com"));
+                assertNull(domainIpService.findDomainByIp("10.0.0.2"));
+                break;
+            default:
+                assertEquals(report.getAdded(), 1);
+                assertEquals(report.getOverwritten(), 0);
+                assertEquals(report.getKeptExisting(), 2);
+                assertEquals(domainIpService.findIpByDomain("b.com"), "10.0.0.2");
+                assertEquals(domainIpService.findDomainByIp("10.0.0.3"), "c.com");
+                assertNull(domainIpService.findIpByDomain("e.com"));
+                break;
+        }
+        assertFalse(report.isAborted());
+        assertEquals(report.getUnchanged(), 1);
+        assertEquals(domainIpService.getRecordCount(), 4);
+        assertEquals(domainIpService.findDomainByIp("10.0.0.4"), "d.com");
+        assertNull(domainIpService.findIpByDomain("f.com"));
+
+        // Изменения из отчета, примененные к исходным данным, дают тот же результат:
+        // по ним импорт выгружается на сервер
+        DomainIpService replayed = new DomainIpService();
+        replayed.loadData(stream(EXISTING));
+        assertEquals(replayed.applyChanges(report.getChanges(), (index, e) -> fail(e.getMessage())),
+                report.getChanges().size());
+        assertEquals(replayed.convertDataToJson(), domainIpService.convertDataToJson());
+    }
+
+    // Домен импортируемой записи принадлежит одной записи, а IP - другой: заменяются обе
+    @Test
+    public void importOverwriteReplacesBothConflictingRecords() throws IOException {
+        DomainIpService domainIpService = new DomainIpService();
+        domainIpService.loadData(stream(EXISTING));
+
+        ImportReport report = domainIpService.importRecords(
+                Collections.singletonList(new DomainIpRecord("A.com", "10.0.0.2")), ConflictPolicy.OVERWRITE);
+
+        assertEquals(report.getOverwritten(), 1);
+        assertEquals(report.getChanges().size(), 3);
+        assertEquals(domainIpService.getRecordCount(), 2);
+        assertEquals(domainIpService.findIpByDomain("a.com"), "10.0.0.2");
+        assertNull(domainIpService.findIpByDomain("b.com"));
+        assertNull(domainIpService.findDomainByIp("10.0.0.1"));
+        assertEquals(domainIpService.findDomainByIp("10.0.0.3"), "c.com");
+    }
+}
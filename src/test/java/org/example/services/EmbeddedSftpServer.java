@@ -0,0 +1,87 @@
+package org.example.services;
+
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.sftp.SftpModuleProperties;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// SFTP-сервер Apache SSHD в том же процессе: свободный порт, корень во
+// временном каталоге с папкой upload, пользователь user/password
+final class EmbeddedSftpServer implements AutoCloseable {
+    static final String USERNAME = "user";
+    static final String PASSWORD = "password";
+
+    private final SshServer server;
+    private final Path root;
+
+    private EmbeddedSftpServer(SshServer server, Path root) {
+        this.server = server;
+        this.root = root;
+    }
+
+    static EmbeddedSftpServer start() throws IOException {
+        return start(true);
+    }
+
+    // posixRename = false: сервер не объявляет posix-rename@openssh.com,
+    // и RENAME не перезаписывает существующий файл
+    static EmbeddedSftpServer start(boolean posixRename) throws IOException {
+        Path root = Files.createTempDirectory("sftp-root");
+        Files.createDirectories(root.resolve("upload"));
+
+        SshServer server = SshServer.setUpDefaultServer();
+        server.setHost("localhost");
+        server.setPort(0);
+        server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+        server.setPasswordAuthenticator((username, password, session) ->
+                USERNAME.equals(username) && PASSWORD.equals(password));
+        server.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory()));
+        server.setFileSystemFactory(new VirtualFileSystemFactory(root));
+        if (!posixRename) {
+            SftpModuleProperties.OPENSSH_EXTENSIONS.set(server, "statvfs@openssh.com=2");
+        }
+        server.start();
+        return new EmbeddedSftpServer(server, root);
+    }
+
+    int getPort() {
+        return server.getPort();
+    }
+
+    // Файл на сервере по пути вида /upload/domains.json
+    Path file(String remotePath) {
+        return root.resolve(remotePath.substring(1));
+    }
+
+    int getSessionCount() {
+        return server.getActiveSessions().size();
+    }
+
+    // Разрывает все соединения со стороны сервера
+    void dropSessions() {
+        List<ServerSession> sessions = new ArrayList<>();
+        server.getActiveSessions().forEach(session -> sessions.add((ServerSession) session));
+        for (ServerSession session : sessions) {
+            session.close(true);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.stop(true);
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.services;
+
+import org.example.dto.PushReport;
+import org.example.dto.SftpTarget;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+// Выгрузка на несколько встроенных серверов и один закрытый порт
+public class FanOutPublisherTest {
+    private static final int SERVERS = 3;
+    private static final String JSON = "[" +
+            "{\"domain\": \"a.example.com\", \"ip\": \"10.0.0.1\"}," +
+            "{\"domain\": \"b.example.com\", \"ip\": \"10.0.0.2\"}]";
+
+    private final List<EmbeddedSftpServer> servers = new ArrayList<>();
+    private DomainIpService domainIpService;
+    private int deadPort;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        for (int i = 0; i < SERVERS; i++) {
+            servers.add(EmbeddedSftpServer.start());
+        }
+        // Порт, который только что был свободен: подключение к нему отклоняется
+        try (ServerSocket socket = new ServerSocket(0)) {
+            deadPort = socket.getLocalPort();
+        }
+        domainIpService = new DomainIpService();
+        domainIpService.loadData(new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws IOException {
+        for (EmbeddedSftpServer server : servers) {
+            server.close();
+        }
+        servers.clear();
+    }
+
+    private List<SftpTarget> targets() {
+        List<SftpTarget> targets = new ArrayList<>();
+        for (EmbeddedSftpServer server : servers) {
+            targets.add(new SftpTarget("localhost", server.getPort(),
+                    EmbeddedSftpServer.USERNAME, EmbeddedSftpServer.PASSWORD));
+        }
+        targets.add(new SftpTarget("localhost", deadPort, EmbeddedSftpServer.USERNAME, EmbeddedSftpServer.PASSWORD));
+        return targets;
+    }
+
+    @Test
+    public void pushesToLiveServersAndReportsDeadOne() throws Exception {
+        String remotePath = "/upload/domains.json";
+        List<SftpTarget> targets = targets();
+        PushReport report = new FanOutPublisher(targets, remotePath, 2, 2, 5, GzipCodec.DEFAULT_LEVEL)
+                .publish(domainIpService);
+
+        assertEquals(report.getResults().size(), SERVERS + 1);
+        assertEquals(report.getSucceeded(), SERVERS);
+        assertEquals(report.getFailed(), 1);
+        assertEquals(report.getFileSize(), serialized().length);
+
+        for (int i = 0; i < SERVERS; i++) {
+            PushReport.TargetResult result = report.getResults().get(i);
+            assertEquals(result.getTarget(), targets.get(i));
+            assertTrue(result.isSuccess(), String.valueOf(result));
+            assertEquals(result.getAttempts(), 1);
+            assertNull(result.getError());
+            assertEquals(Files.readAllBytes(servers.get(i).file(remotePath)), serialized());
+            assertNoTempFiles(servers.get(i).file("/upload"));
+        }
+
+        PushReport.TargetResult dead = report.getResults().get(SERVERS);
+        assertEquals(dead.getTarget(), targets.get(SERVERS));
+        assertFalse(dead.isSuccess());
+        assertEquals(dead.getAttempts(), 2);
+        assertNotNull(dead.getError());
+    }
+
+    @Test
+    public void compressesGzipFile() throws Exception {
+        String remotePath = "/upload/domains.json.gz";
+        PushReport report = new FanOutPublisher(targets().subList(0, SERVERS), remotePath, 4, 1, 5, 9)
+                .publish(domainIpService);
+
+        assertEquals(report.getSucceeded(), SERVERS);
+        for (EmbeddedSftpServer server : servers) {
+            DomainIpService loaded = new DomainIpService();
+            try (InputStream inputStream = Files.newInputStream(server.file(remotePath))) {
+                assertEquals(inputStream.read(), 0x1f);
+            }
+            try (InputStream inputStream = Files.newInputStream(server.file(remotePath))) {
+                loaded.loadData(inputStream);
+            }
+            assertEquals(loaded.getAllRecords().toString(), domainIpService.getAllRecords().toString());
+        }
+    }
+
+    private byte[] serialized() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        domainIpService.writeData(bytes);
+        return bytes.toByteArray();
+    }
+
+    private static void assertNoTempFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            assertFalse(files.anyMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.services;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+// Индекс сверяется с TreeMap по беззнаковому адресу. Изменений больше
+// порога слияния, поэтому проверяются и буфер, и удаленные позиции, и слияние
+public class Ipv4IndexTest {
+    private static final int OPERATIONS = 100_000;
+    // Адреса из небольшого диапазона: одни и те же часто удаляются и добавляются снова
+    private static final int ADDRESSES = 5000;
+
+    private static int address(int i) {
+        // Половина адресов выше 128.0.0.0: порядок должен быть беззнаковым
+        return (i % 2 == 0 ? 0x0A000000 : 0xC0A80000) + i;
+    }
+
+    private static List<String> range(Ipv4Index index, int from, int to) {
+        return index.domainsInRange(from, to).collect(Collectors.toList());
+    }
+
+    @Test
+    public void matchesTreeMapOnRandomOperations() {
+        Random random = new Random(11);
+        Ipv4Index index = new Ipv4Index();
+        TreeMap<Long, String> expected = new TreeMap<>();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int ip = address(random.nextInt(ADDRESSES));
+            long key = ip & 0xFFFFFFFFL;
+            if (random.nextInt(3) == 0) {
+                assertEquals(index.remove(ip), expected.remove(key));
+            } else {
+                String domain = "host" + i;
+                assertEquals(index.put(ip, domain), !expected.containsKey(key));
+                expected.putIfAbsent(key, domain);
+            }
+            assertEquals(index.size(), expected.size());
+            assertEquals(index.get(ip), expected.get(key));
+        }
+
+        assertEquals(range(index, 0, -1), new ArrayList<>(expected.values()));
+        assertEquals(range(index, 0x0A000000, 0x0AFFFFFF),
+                new ArrayList<>(expected.subMap(0x0A000000L, true, 0x0AFFFFFFL, true).values()));
+
+        Ipv4Index merged = index.merged();
+        int position = 0;
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertEquals(merged.keyAt(position) ^ Integer.MIN_VALUE, (int) (long) entry.getKey());
+            assertEquals(merged.domainAt(position), entry.getValue());
+            position++;
+        }
+    }
+
+    // Удаленный адрес остается на месте до слияния и занимается снова без сдвига массивов
+    @Test
+    public void removedAddressIsReusedBeforeMerge() {
+        Ipv4Index index = new Ipv4Index();
+        // Больше порога: буфер уже слит с основными массивами
+        for (int i = 0; i < 3000; i++) {
+            index.put(address(i), "host" + i);
+        }
+
+        assertEquals(index.remove(address(100)), "host100");
+        assertNull(index.get(address(100)));
+        assertNull(index.remove(address(100)));
+        assertEquals(index.size(), 2999);
+        assertFalse(range(index, address(98), address(102)).contains("host100"));
+
+        assertTrue(index.put(address(100), "reused"));
+        assertFalse(index.put(address(100), "again"));
+        assertEquals(index.get(address(100)), "reused");
+        assertEquals(index.size(), 3000);
+        assertEquals(range(index, address(98), address(102)), Arrays.asList("host98", "reused", "host102"));
+    }
+
+    // Новые адреса до слияния лежат в буфере и выдаются вперемешку с основными
+    @Test
+    public void bufferedAddressesAreMergedInOrder() {
+        Ipv4Index index = new Ipv4Index();
+        for (int i = 0; i < 3000; i += 2) {
+            index.put(address(i), "host" + i);
+        }
+        // Нечетные адреса 10.0.0.x попадают в буфер между основными
+        index.put(0x0A000001, "buffered1");
+        index.put(0x0A000003, "buffered3");
+
+        assertEquals(range(index, 0x0A000000, 0x0A000004),
+                Arrays.asList("host0", "buffered1", "host2", "buffered3", "host4"));
+        assertEquals(index.remove(0x0A000001), "buffered1");
+        assertEquals(range(index, 0x0A000000, 0x0A000002), Arrays.asList("host0", "host2"));
+
+        Ipv4Index copy = index.copy();
+        copy.put(0x0A000001, "copy");
+        assertNull(index.get(0x0A000001));
+        assertEquals(copy.merged().size(), index.size() + 1);
+    }
+
+    @Test
+    public void buildKeepsFirstOfDuplicateAddresses() {
+        RecordTable records = new RecordTable();
+        records.add("a.com", 0xC0A80001);
+        records.add("b.com", 0x0A000001);
+        records.add("c.com", 0xC0A80001);
+
+        List<Integer> rejected = new ArrayList<>();
+        Ipv4Index index = Ipv4Index.build(records, rejected::add);
+
+        assertEquals(rejected, Arrays.asList(2));
+        assertEquals(index.size(), 2);
+        assertEquals(index.get(0xC0A80001), "a.com");
+        assertEquals(range(index, 0, -1), Arrays.asList("b.com", "a.com"));
+    }
+}
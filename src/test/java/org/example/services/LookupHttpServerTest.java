@@ -0,0 +1,102 @@
+package org.example.services;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.assertEquals;
+
+public class LookupHttpServerTest {
+    private LookupHttpServer server;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        DomainIpService domainIpService = new DomainIpService(true);
+        domainIpService.addRecord("a.com", "10.0.0.1");
+        domainIpService.addRecord("b c.com", "10.0.0.2");
+        server = new LookupHttpServer(domainIpService, LookupHttpServer.DEFAULT_BIND_ADDRESS, 0, 2);
+        server.start();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void looksUpByDomainAndIp() throws IOException {
+        assertResponse("GET", "/lookup?domain=a.com", null, 200, "10.0.0.1");
+        assertResponse("GET", "/lookup?ip=10.0.0.2", null, 200, "b c.com");
+        assertResponse("GET", "/lookup?domain=missing.com", null, 404, "Не найдено: missing.com");
+    }
+
+    @Test
+    public void decodesEachParameterSeparately() throws IOException {
+        assertResponse("GET", "/lookup?domain=a.com&x=1", null, 200, "10.0.0.1");
+        assertResponse("GET", "/lookup?x=1&ip=10.0.0.1", null, 200, "a.com");
+        assertResponse("GET", "/lookup?domain=b+c.com", null, 200, "10.0.0.2");
+        assertResponse("GET", "/lookup?%64omain=b%20c.com", null, 200, "10.0.0.2");
+    }
+
+    @Test
+    public void rejectsMissingOrAmbiguousParameters() throws IOException {
+        assertResponse("GET", "/lookup", null, 400, "Укажите параметр domain или ip");
+        assertResponse("GET", "/lookup?x=1", null, 400, "Укажите параметр domain или ip");
+        assertResponse("GET", "/lookup?domain=a.com&ip=10.0.0.1", null, 400, "Укажите параметр domain или ip");
+        assertResponse("GET", "/lookup?ip=10.0.0.256", null, 400, "Некорректный IPv4 адрес: 10.0.0.256");
+    }
+
+    @Test
+    public void rejectsOtherPaths() throws IOException {
+        assertResponse("GET", "/lookupfoo?domain=a.com", null, 404, "Не найдено: /lookupfoo");
+        assertResponse("GET", "/lookup/other?domain=a.com", null, 404, "Не найдено: /lookup/other");
+        assertResponse("POST", "/lookup/batchx", "a.com\n", 404, "Не найдено: /lookup/batchx");
+    }
+
+    @Test
+    public void looksUpBatch() throws IOException {
+        assertResponse("POST", "/lookup/batch", "a.com\n\n10.0.0.2\nmissing.com\n", 200,
+                "a.com\t10.0.0.1\n10.0.0.2\tb c.com\nmissing.com\t\n");
+        assertResponse("GET", "/lookup/batch", null, 405, "Метод не поддерживается");
+    }
+
+    private void assertResponse(String method, String path, String body, int status, String expected)
+            throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)
+                new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+        try {
+            connection.setRequestMethod(method);
+            if (body != null) {
+                connection.setDoOutput(true);
+                try (OutputStream outputStream = connection.getOutputStream()) {
+                    outputStream.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            assertEquals(connection.getResponseCode(), status, path);
+            InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            assertEquals(read(inputStream), expected, path);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream stream = inputStream) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
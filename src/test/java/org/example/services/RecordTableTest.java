@@ -0,0 +1,78 @@
+package org.example.services;
+
+import org.example.dto.DomainIpRecord;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+// Таблица сверяется с LinkedHashMap на случайных добавлениях и удалениях:
+// удаления со сдвигом назад, сжатие позиций и перестроение хеш-таблицы
+public class RecordTableTest {
+    private static final int OPERATIONS = 200_000;
+    // Мало доменов - длинные цепочки и частые удаления
+    private static final int DOMAINS = 3000;
+
+    @Test
+    public void matchesLinkedHashMapOnRandomOperations() {
+        Random random = new Random(7);
+        RecordTable table = new RecordTable();
+        Map<String, Integer> expected = new LinkedHashMap<>();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            String domain = "host" + random.nextInt(DOMAINS) + ".example.com";
+            if (random.nextBoolean()) {
+                domain = domain.toUpperCase(Locale.ROOT);
+            }
+            String key = domain.toLowerCase(Locale.ROOT);
+            int position = table.find(domain);
+            assertEquals(position >= 0, expected.containsKey(key), domain);
+
+            if (position >= 0) {
+                assertEquals(table.ip(position), (int) expected.get(key), domain);
+                table.remove(position);
+                expected.remove(key);
+            } else {
+                table.add(domain, i);
+                expected.put(key, i);
+            }
+            if (i % 50_000 == 0) {
+                table.trim();
+            }
+        }
+
+        assertEquals(table.size(), expected.size());
+        List<String> order = new ArrayList<>();
+        for (DomainIpRecord record : table.records()) {
+            order.add(record.getDomain().toLowerCase(Locale.ROOT));
+        }
+        assertEquals(order, new ArrayList<>(expected.keySet()));
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(table.ip(table.find(entry.getKey())), (int) entry.getValue());
+        }
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        RecordTable table = new RecordTable();
+        table.add("a.com", 1);
+        table.add("b.com", 2);
+
+        RecordTable copy = table.copy();
+        copy.remove(copy.find("a.com"));
+        copy.add("c.com", 3);
+
+        assertEquals(table.size(), 2);
+        assertEquals(table.ip(table.find("A.COM")), 1);
+        assertEquals(table.find("c.com"), -1);
+        assertEquals(copy.size(), 2);
+        assertEquals(copy.find("a.com"), -1);
+        assertEquals(copy.record(copy.find("c.com")).getIp(), "0.0.0.3");
+    }
+}
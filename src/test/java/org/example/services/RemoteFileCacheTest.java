@@ -0,0 +1,145 @@
+package org.example.services;
+
+import com.jcraft.jsch.SftpATTRS;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+// Атрибуты файла берутся с настоящего SFTP-сервера: SftpATTRS не создается напрямую
+public class RemoteFileCacheTest {
+    private static final String REMOTE = "/upload/domains.json";
+    private static final String JSON = "[{\"domain\": \"a.com\", \"ip\": \"10.0.0.1\"}," +
+            "{\"domain\": \"b.com\", \"ip\": \"10.0.0.2\"}]";
+
+    private EmbeddedSftpServer server;
+    private SftpService sftpService;
+    private Path directory;
+    private RemoteFileCache cache;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = EmbeddedSftpServer.start();
+        sftpService = new SftpService("localhost", server.getPort(),
+                EmbeddedSftpServer.USERNAME, EmbeddedSftpServer.PASSWORD);
+        sftpService.connect(10000);
+        directory = Files.createTempDirectory("cache");
+        cache = new RemoteFileCache(directory, "localhost", server.getPort());
+        writeRemote(JSON);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        sftpService.disconnect();
+        server.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private void writeRemote(String content) throws IOException {
+        Files.write(server.file(REMOTE), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path cacheWhileReading(SftpATTRS attrs) throws Exception {
+        try (RemoteFileCache.CachingInputStream inputStream = cache.cacheWhileReading(REMOTE, attrs,
+                sftpService.openDownloadStream(REMOTE))) {
+            // Часть потока читает разбор, остаток дочитывает complete
+            inputStream.read(new byte[10]);
+            inputStream.skip(5);
+            return inputStream.complete();
+        }
+    }
+
+    private static long countFiles(Path directory, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(suffix)).count();
+        }
+    }
+
+    @Test
+    public void copyIsFoundWhileRemoteFileIsUnchanged() throws Exception {
+        SftpATTRS attrs = sftpService.stat(REMOTE);
+        Path dataFile = cacheWhileReading(attrs);
+
+        assertEquals(new String(Files.readAllBytes(dataFile), StandardCharsets.UTF_8), JSON);
+        assertEquals(cache.find(REMOTE, sftpService.stat(REMOTE)), dataFile);
+        try (InputStream inputStream = sftpService.openDownloadStream(REMOTE)) {
+            assertEquals(cache.getChecksum(REMOTE), RemoteFileCache.checksum(inputStream));
+        }
+        assertEquals(countFiles(directory, ".tmp"), 0);
+    }
+
+    @Test
+    public void copyIsStaleAfterRemoteChange() throws Exception {
+        cacheWhileReading(sftpService.stat(REMOTE));
+
+        writeRemote("[]");
+        assertNull(cache.find(REMOTE, sftpService.stat(REMOTE)));
+        // Тот же размер, другое время изменения
+        writeRemote(JSON);
+        Files.setLastModifiedTime(server.file(REMOTE), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        assertNull(cache.find(REMOTE, sftpService.stat(REMOTE)));
+    }
+
+    // Прерванное скачивание не оставляет в кэше ни копии, ни временного файла
+    @Test
+    public void incompleteReadIsNotCached() throws Exception {
+        SftpATTRS attrs = sftpService.stat(REMOTE);
+        try (RemoteFileCache.CachingInputStream inputStream = cache.cacheWhileReading(REMOTE, attrs,
+                sftpService.openDownloadStream(REMOTE))) {
+            inputStream.read(new byte[10]);
+        }
+
+        assertNull(cache.find(REMOTE, attrs));
+        assertNull(cache.getChecksum(REMOTE));
+        assertEquals(countFiles(directory, ".tmp"), 0);
+    }
+
+    // Копии разных серверов с одним путем не пересекаются
+    @Test
+    public void copiesAreKeyedByServer() throws Exception {
+        SftpATTRS attrs = sftpService.stat(REMOTE);
+        cacheWhileReading(attrs);
+
+        RemoteFileCache otherServer = new RemoteFileCache(directory, "other-host", server.getPort());
+        assertNull(otherServer.find(REMOTE, attrs));
+        assertNotNull(cache.find(REMOTE, attrs));
+    }
+
+    // Снимок относится к текущей копии: новая копия удаляет старый снимок
+    @Test
+    public void snapshotFollowsStoredCopy() throws Exception {
+        Path dataFile = cacheWhileReading(sftpService.stat(REMOTE));
+        DomainIpService domainIpService = new DomainIpService();
+        domainIpService.loadDataFromFile(dataFile.toString());
+        cache.saveSnapshot(REMOTE, domainIpService);
+
+        Path snapshotFile = cache.findSnapshot(REMOTE);
+        assertNotNull(snapshotFile);
+        DomainIpService loaded = new DomainIpService();
+        loaded.loadSnapshot(snapshotFile);
+        assertEquals(loaded.convertDataToJson(), domainIpService.convertDataToJson());
+
+        writeRemote("[]");
+        Path downloaded = Files.write(Files.createTempFile(directory, "download", ".json"),
+                "[]".getBytes(StandardCharsets.UTF_8));
+        SftpATTRS attrs = sftpService.stat(REMOTE);
+        assertEquals(cache.store(REMOTE, attrs, downloaded), cache.find(REMOTE, attrs));
+        assertFalse(Files.exists(downloaded));
+        assertNull(cache.findSnapshot(REMOTE));
+    }
+}
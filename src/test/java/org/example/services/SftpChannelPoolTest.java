@@ -0,0 +1,117 @@
+package org.example.services;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class SftpChannelPoolTest {
+    private EmbeddedSftpServer server;
+    private SftpChannelPool pool;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = EmbeddedSftpServer.start();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        if (pool != null) {
+            pool.close();
+        }
+        server.close();
+    }
+
+    private SftpChannelPool pool(int maxSize, long idleTimeoutSeconds) {
+        pool = new SftpChannelPool("localhost", server.getPort(), EmbeddedSftpServer.USERNAME,
+                EmbeddedSftpServer.PASSWORD, maxSize, idleTimeoutSeconds);
+        return pool;
+    }
+
+    @Test
+    public void reusesReturnedConnection() throws Exception {
+        pool(2, 60);
+        SftpService first = pool.borrow();
+        assertTrue(first.isConnected());
+        pool.release(first);
+        assertEquals(pool.getIdleCount(), 1);
+
+        SftpService second = pool.borrow();
+        assertSame(second, first);
+        assertEquals(pool.getIdleCount(), 0);
+        pool.release(second);
+        assertEquals(server.getSessionCount(), 1);
+    }
+
+    @Test
+    public void blocksWhenAllConnectionsAreBorrowed() throws Exception {
+        pool(2, 60);
+        SftpService first = pool.borrow();
+        SftpService second = pool.borrow();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SftpService> third = executor.submit(() -> pool.borrow());
+            try {
+                third.get(500, TimeUnit.MILLISECONDS);
+                fail("Пул выдал соединение сверх maxSize");
+            } catch (TimeoutException e) {
+                // Ожидает возврата соединения
+            }
+            assertEquals(server.getSessionCount(), 2);
+
+            pool.release(first);
+            assertSame(third.get(10, TimeUnit.SECONDS), first);
+            pool.release(first);
+            pool.release(second);
+            assertEquals(server.getSessionCount(), 2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void closesIdleConnectionsAfterTimeout() throws Exception {
+        pool(2, 1);
+        SftpService connection = pool.borrow();
+        pool.release(connection);
+        assertEquals(pool.getIdleCount(), 1);
+
+        Thread.sleep(1200);
+        pool.evictIdle();
+        assertEquals(pool.getIdleCount(), 0);
+        assertFalse(connection.isConnected());
+    }
+
+    @Test
+    public void reconnectsAfterServerDropsSession() throws Exception {
+        pool(1, 60);
+        SftpService connection = pool.borrow();
+        pool.release(connection);
+
+        server.dropSessions();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (connection.isConnected() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(connection.isConnected());
+
+        // Разорванное соединение отбрасывается, задача выполняется на новом
+        assertTrue(pool.execute(sftpService -> sftpService.exists("/upload")));
+        SftpService reconnected = pool.borrow();
+        assertTrue(reconnected.isConnected());
+        pool.release(reconnected);
+        assertEquals(pool.getIdleCount(), 1);
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.services;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+public class SftpServiceTest {
+    private EmbeddedSftpServer server;
+    private SftpService sftpService;
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        if (sftpService != null) {
+            sftpService.disconnect();
+        }
+        server.close();
+    }
+
+    private void connect(boolean posixRename) throws Exception {
+        server = EmbeddedSftpServer.start(posixRename);
+        sftpService = new SftpService("localhost", server.getPort(),
+                EmbeddedSftpServer.USERNAME, EmbeddedSftpServer.PASSWORD);
+        sftpService.connect(10000);
+        assertEquals(sftpService.supportsAtomicRename(), posixRename);
+    }
+
+    private String read(String remotePath) throws IOException {
+        return new String(Files.readAllBytes(server.file(remotePath)), StandardCharsets.UTF_8);
+    }
+
+    @DataProvider
+    public Object[][] posixRename() {
+        return new Object[][]{{true}, {false}};
+    }
+
+    @Test(dataProvider = "posixRename")
+    public void renameReplacesExistingFile(boolean posixRename) throws Exception {
+        connect(posixRename);
+        Files.write(server.file("/upload/old"), "old".getBytes(StandardCharsets.UTF_8));
+        Files.write(server.file("/upload/new"), "new".getBytes(StandardCharsets.UTF_8));
+
+        sftpService.rename("/upload/new", "/upload/old");
+        assertEquals(read("/upload/old"), "new");
+        assertFalse(Files.exists(server.file("/upload/new")));
+    }
+
+    @Test(dataProvider = "posixRename")
+    public void replaceFileOverwritesExistingFile(boolean posixRename) throws Exception {
+        connect(posixRename);
+        Files.write(server.file("/upload/domains.json"), "old".getBytes(StandardCharsets.UTF_8));
+
+        sftpService.replaceFile("/upload/domains.json",
+                outputStream -> outputStream.write("new".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(read("/upload/domains.json"), "new");
+
+        // Отмененная замена не оставляет временных файлов
+        assertFalse(sftpService.replaceFile("/upload/domains.json",
+                outputStream -> outputStream.write("other".getBytes(StandardCharsets.UTF_8)), () -> false));
+        assertEquals(read("/upload/domains.json"), "new");
+        try (Stream<java.nio.file.Path> files = Files.list(server.file("/upload"))) {
+            assertEquals(files.count(), 1L);
+        }
+    }
+}
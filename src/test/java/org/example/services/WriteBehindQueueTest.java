@@ -0,0 +1,142 @@
+package org.example.services;
+
+import org.example.dto.RecordChange;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class WriteBehindQueueTest {
+    private static final String SNAPSHOT = "/upload/domains.json";
+
+    private EmbeddedSftpServer server;
+    private SftpService sftpService;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = EmbeddedSftpServer.start();
+        sftpService = new SftpService("localhost", server.getPort(),
+                EmbeddedSftpServer.USERNAME, EmbeddedSftpServer.PASSWORD);
+        sftpService.connect(10000);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        sftpService.disconnect();
+        server.close();
+    }
+
+    private DomainIpService readRemote(String path) throws Exception {
+        DomainIpService remote = new DomainIpService();
+        try (InputStream inputStream = Files.newInputStream(server.file(path))) {
+            remote.loadData(inputStream);
+        }
+        return remote;
+    }
+
+    // Изменения копятся до порога и уходят на сервер одной выгрузкой
+    @Test
+    public void flushPublishesPendingChangesAtOnce() throws Exception {
+        DomainIpService domainIpService = new DomainIpService();
+        ChangePublisher publisher = new ChangePublisher(sftpService, domainIpService, SNAPSHOT, null);
+        try (WriteBehindQueue queue = new WriteBehindQueue(domainIpService, publisher, 3, 0)) {
+            assertFalse(queue.apply(RecordChange.add("a.com", "10.0.0.1")));
+            assertFalse(queue.apply(RecordChange.add("b.com", "10.0.0.2")));
+            assertTrue(queue.apply(RecordChange.add("c.com", "10.0.0.3")));
+            // Данные меняются сразу, на сервер пока ничего не ушло
+            assertEquals(domainIpService.getRecordCount(), 3);
+            assertFalse(Files.exists(server.file(SNAPSHOT)));
+
+            assertTrue(queue.flush());
+            assertEquals(queue.getPendingCount(), 0);
+            assertEquals(queue.getPublishCount(), 1);
+            assertEquals(readRemote(SNAPSHOT).getRecordCount(), 3);
+
+            // Выгружать нечего
+            assertFalse(queue.flush());
+            assertEquals(queue.getPublishCount(), 1);
+        }
+    }
+
+    // Ошибка выгрузки оставляет изменения в очереди до следующей попытки
+    @Test
+    public void failedFlushKeepsChangesPending() throws Exception {
+        String path = "/upload/missing/domains.json";
+        DomainIpService domainIpService = new DomainIpService();
+        ChangePublisher publisher = new ChangePublisher(sftpService, domainIpService, path, null);
+        try (WriteBehindQueue queue = new WriteBehindQueue(domainIpService, publisher, 10, 0)) {
+            queue.apply(RecordChange.add("a.com", "10.0.0.1"));
+            queue.apply(RecordChange.add("b.com", "10.0.0.2"));
+            try {
+                queue.flush();
+                fail("Выгрузка в несуществующий каталог прошла");
+            } catch (Exception e) {
+                // Ожидаемо: каталога на сервере нет
+            }
+            assertEquals(queue.getPendingCount(), 2);
+            assertEquals(queue.getPublishCount(), 0);
+
+            Files.createDirectories(server.file("/upload/missing"));
+            assertTrue(queue.flush());
+            assertEquals(queue.getPendingCount(), 0);
+            assertEquals(readRemote(path).getRecordCount(), 2);
+        }
+    }
+
+    @Test(timeOut = 30000)
+    public void timerFlushesInBackground() throws Exception {
+        DomainIpService domainIpService = new DomainIpService();
+        ChangePublisher publisher = new ChangePublisher(sftpService, domainIpService, SNAPSHOT, null);
+        try (WriteBehindQueue queue = new WriteBehindQueue(domainIpService, publisher, 100, 1)) {
+            queue.apply(RecordChange.add("a.com", "10.0.0.1"));
+            while (queue.getPublishCount() == 0) {
+                Thread.sleep(50);
+            }
+            assertEquals(queue.getPendingCount(), 0);
+            assertEquals(readRemote(SNAPSHOT).findIpByDomain("a.com"), "10.0.0.1");
+        }
+    }
+
+    // close останавливает таймер и выгружает то, что осталось в очереди
+    @Test
+    public void closeFlushesRemainingChanges() throws Exception {
+        DomainIpService domainIpService = new DomainIpService();
+        ChangePublisher publisher = new ChangePublisher(sftpService, domainIpService, SNAPSHOT, null);
+        WriteBehindQueue queue = new WriteBehindQueue(domainIpService, publisher, 100, 3600);
+        queue.apply(RecordChange.add("a.com", "10.0.0.1"));
+        queue.apply(RecordChange.add("b.com", "10.0.0.2"));
+        queue.apply(RecordChange.removeByDomain("a.com"));
+
+        queue.close();
+
+        assertEquals(queue.getPendingCount(), 0);
+        assertEquals(queue.getPublishCount(), 1);
+        DomainIpService remote = readRemote(SNAPSHOT);
+        assertEquals(remote.getRecordCount(), 1);
+        assertEquals(remote.findIpByDomain("b.com"), "10.0.0.2");
+    }
+
+    // Изменение, отклоненное данными, в очередь не попадает
+    @Test
+    public void rejectedChangeIsNotQueued() throws Exception {
+        DomainIpService domainIpService = new DomainIpService();
+        ChangePublisher publisher = new ChangePublisher(sftpService, domainIpService, SNAPSHOT, null);
+        try (WriteBehindQueue queue = new WriteBehindQueue(domainIpService, publisher, 10, 0)) {
+            queue.apply(RecordChange.add("a.com", "10.0.0.1"));
+            try {
+                queue.apply(RecordChange.add("a.com", "10.0.0.2"));
+                fail("Повторный домен принят");
+            } catch (IllegalArgumentException e) {
+                // Ожидаемо
+            }
+            assertEquals(queue.getPendingCount(), 1);
+        }
+    }
+}